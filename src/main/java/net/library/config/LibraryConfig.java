@@ -1,15 +1,21 @@
 package net.library.config;
 
+import lombok.RequiredArgsConstructor;
 import net.library.config.parsers.BookItemStatusTypeParser;
+import net.library.config.parsers.DataFormatTypeParser;
 import net.library.config.parsers.ModerationTypeParser;
 import net.library.config.parsers.RoleTypeTypeParser;
+import net.library.config.parsers.SearchModeTypeParser;
+import net.library.config.parsers.UserSearchModeTypeParser;
 import net.library.config.parsers.UserStateTypeParser;
+import net.library.service.ExportLimiter;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.method.HandlerTypePredicate;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -18,7 +24,9 @@ import java.util.List;
 import static net.library.util.HttpUtil.GLOBAL_BASE_URI;
 
 @Configuration
+@RequiredArgsConstructor
 public class LibraryConfig implements WebMvcConfigurer {
+    private final ExportLimiter exportLimiter;
 
     @Override
     public void configurePathMatch(PathMatchConfigurer configurer) {
@@ -31,6 +39,9 @@ public class LibraryConfig implements WebMvcConfigurer {
         registry.addConverter(new RoleTypeTypeParser());
         registry.addConverter(new UserStateTypeParser());
         registry.addConverter(new BookItemStatusTypeParser());
+        registry.addConverter(new DataFormatTypeParser());
+        registry.addConverter(new SearchModeTypeParser());
+        registry.addConverter(new UserSearchModeTypeParser());
     }
 
     @Override
@@ -40,4 +51,9 @@ public class LibraryConfig implements WebMvcConfigurer {
         resolver.setMaxPageSize(100);
         argumentResolver.add(resolver);
     }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(exportLimiter);
+    }
 }
@@ -0,0 +1,18 @@
+package net.library.config.parsers;
+
+import net.library.model.request.DataFormat;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+
+public class DataFormatTypeParser implements Converter<String, DataFormat> {
+
+    @Override
+    public DataFormat convert(@NonNull final String value) {
+        return Arrays.stream(DataFormat.values())
+                .filter(e -> e.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Invalid value '" + value + "'"));
+    }
+}
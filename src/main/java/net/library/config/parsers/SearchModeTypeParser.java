@@ -0,0 +1,18 @@
+package net.library.config.parsers;
+
+import net.library.model.request.SearchMode;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+
+public class SearchModeTypeParser implements Converter<String, SearchMode> {
+
+    @Override
+    public SearchMode convert(@NonNull final String value) {
+        return Arrays.stream(SearchMode.values())
+                .filter(e -> e.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Invalid value '" + value + "'"));
+    }
+}
@@ -0,0 +1,18 @@
+package net.library.config.parsers;
+
+import net.library.model.request.UserSearchMode;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+
+import java.util.Arrays;
+
+public class UserSearchModeTypeParser implements Converter<String, UserSearchMode> {
+
+    @Override
+    public UserSearchMode convert(@NonNull final String value) {
+        return Arrays.stream(UserSearchMode.values())
+                .filter(e -> e.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Invalid value '" + value + "'"));
+    }
+}
@@ -5,22 +5,40 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import net.library.model.dto.BookSuggestionDto;
 import net.library.model.request.BookRequest;
+import net.library.model.request.CountMode;
+import net.library.model.request.DataFormat;
+import net.library.model.request.SearchMode;
 import net.library.model.response.AddBookResponse;
+import net.library.model.response.BookImportReport;
 import net.library.model.response.BookResponse;
 import net.library.model.response.Page;
 import net.library.service.BookService;
+import net.library.service.BookTypeahead;
+import net.library.service.CatalogExporter;
+import net.library.service.CatalogETags;
+import net.library.service.CatalogImporter;
+import net.library.service.ExportLimiter;
+import net.library.util.KeysetCursor;
+import net.library.util.Utils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import static net.library.util.HttpUtil.BOOKS;
 
@@ -28,7 +46,15 @@ import static net.library.util.HttpUtil.BOOKS;
 @RestController
 @RequestMapping(BOOKS)
 public class BookController {
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final MediaType CSV_MEDIA_TYPE = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final BookService service;
+    private final CatalogExporter exporter;
+    private final CatalogImporter importer;
+    private final ExportLimiter exportLimiter;
+    private final CatalogETags eTags;
+    private final BookTypeahead typeahead;
 
     @Operation(summary = "Add  a book entity to database", description = "saves book to database")
     @ApiResponses(value = {
@@ -41,28 +67,120 @@ public class BookController {
         return ResponseEntity.status(201).body(service.addBook(bookRequest));
     }
 
+    /**
+     * Responses carry a strong ETag, a request with a matching 'If-None-Match' gets 304 before the books
+     * of the page are loaded (see {@link CatalogETags}).
+     */
     @GetMapping("/all")
     public Page<BookResponse> getBooks(
             @RequestParam Map<String, String> params,
-            @PageableDefault(size = 10, page = 0) Pageable pageable) {
+            @PageableDefault(size = 10, page = 0) Pageable pageable,
+            WebRequest webRequest) {
         var sortBy = params.get("sortBy");
         var sortFields = sortBy != null && !sortBy.isEmpty()
                 ? List.of(sortBy.split(","))
                 : List.of("author", "createdAt");
 
         var direction = Sort.Direction.fromOptionalString(params.get("order")).orElse(Sort.Direction.DESC);
+        if (params.containsKey("cursor")) {
+            var keysetIds = service.getBookIdsAfter(KeysetCursor.decode(params.get("cursor"), direction), pageable.getPageSize());
+            if (webRequest.checkNotModified(eTags.forBooks(keysetIds.items(), keysetIds.nextCursor()))) {
+                return null;
+            }
+            return new Page<>(pageable.getPageSize(), service.getByIds(keysetIds.items()), keysetIds.nextCursor());
+        }
         var sort = Sort.by(sortFields.stream().map(field -> new Sort.Order(direction, field)).toList());
 
-        final var pages = service.getAllEntities(PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
-        return new Page<>(pages.getSize(),pages.getNumber(),pages.getTotalElements(),
-                pages.get().collect(Collectors.toList()));
+        var countMode = Optional.ofNullable(Utils.convertToEnum(params.get("count"), CountMode.class)).orElse(CountMode.EXACT);
+        var ids = service.getPageOfBookIds(PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort), countMode);
+        if (webRequest.checkNotModified(eTags.forBooks(ids.items(), ids.total()))) {
+            return null;
+        }
+        return new Page<>(pageable.getPageSize(), pageable.getPageNumber(), ids.total(), service.getByIds(ids.items()));
+    }
+
+    @Operation(summary = "Search books", description = "full-text search over title, author and description, "
+            + "most relevant books first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully found"),
+            @ApiResponse(responseCode = "400", description = "when q is missing or mode is not words, prefix or phrase")
+    }
+    )
+    @GetMapping("/search")
+    public Page<BookResponse> searchBooks(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "mode", defaultValue = "words") SearchMode mode,
+            @RequestParam(name = "genre", required = false) String genre,
+            @RequestParam(name = "available", required = false) Boolean available,
+            @RequestParam(name = "count", required = false) String count,
+            @PageableDefault(size = 10, page = 0) Pageable pageable
+    ) {
+        var countMode = Optional.ofNullable(Utils.convertToEnum(count, CountMode.class)).orElse(CountMode.EXACT);
+        var result = service.search(query, mode, genre, available, pageable, countMode);
+        return new Page<>(pageable.getPageSize(), pageable.getPageNumber(), result.total(), result.items());
+    }
+
+    @Operation(summary = "Suggest books as you type", description = "books whose title or author has words starting "
+            + "with every word of q, shorter titles first; served from memory without a database query")
+    @GetMapping("/suggestions")
+    public List<BookSuggestionDto> suggestBooks(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        return typeahead.suggest(query, Math.min(limit, MAX_SUGGESTIONS));
+    }
+
+    @Operation(summary = "Export the whole catalog",
+            description = "streams all books with their copies and genres as NDJSON (one book per line) or CSV (one copy per line)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported"),
+            @ApiResponse(responseCode = "400", description = "when format is neither ndjson nor csv"),
+            @ApiResponse(responseCode = "503", description = "when too many exports are in progress")
+    }
+    )
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestParam(name = "format", defaultValue = "ndjson") DataFormat format
+    ) {
+        var mediaType = format == DataFormat.CSV ? CSV_MEDIA_TYPE : MediaType.APPLICATION_NDJSON;
+        var fileName = "books." + format.name().toLowerCase();
+        var permit = exportLimiter.acquire();
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(outputStream -> {
+                    try (permit) {
+                        exporter.export(format, outputStream);
+                    }
+                });
+    }
+
+    @Operation(summary = "Import books in bulk", description = "imports books and their copies from CSV or NDJSON, "
+            + "rows which are not valid or already stored are reported instead of failing the import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully imported"),
+            @ApiResponse(responseCode = "400", description = "when format is neither ndjson nor csv or the CSV header is not valid")
+    }
+    )
+    @PostMapping("/import")
+    public BookImportReport importBooks(
+            @RequestParam(name = "format", defaultValue = "ndjson") DataFormat format,
+            InputStream body
+    ) {
+        return importer.importBooks(format, body);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<BookResponse> getBookById(
-            @PathVariable("id") UUID id
+            @PathVariable("id") UUID id,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(service.getById(id));
+        var book = service.getById(id);
+        if (webRequest.checkNotModified(book.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok(book.book());
     }
 
     @DeleteMapping("/{id}")
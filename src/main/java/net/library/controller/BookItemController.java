@@ -3,26 +3,43 @@ package net.library.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import net.library.model.dto.BookHoldDto;
+import net.library.model.dto.BookItemBatchResultDto;
 import net.library.model.dto.BookItemDto;
+import net.library.model.dto.BookItemHistoryDto;
 import net.library.model.dto.BookItemIdDto;
+import net.library.model.request.BookItemBatchRequest;
 import net.library.model.request.BookItemRequest;
+import net.library.model.request.CountMode;
 import net.library.model.response.Page;
 import net.library.repository.enums.BookItemStatus;
+import net.library.service.BookAvailabilityStream;
+import net.library.service.BookHoldService;
 import net.library.service.BookService;
+import net.library.service.CatalogETags;
+import net.library.service.IdempotencyService;
+import net.library.util.KeysetCursor;
+import net.library.util.Utils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static net.library.util.HttpUtil.IDEMPOTENCY_KEY_HEADER_NAME;
 import static net.library.util.HttpUtil.ITEMS;
 
 @RequiredArgsConstructor
@@ -30,6 +47,10 @@ import static net.library.util.HttpUtil.ITEMS;
 @RequestMapping(ITEMS)
 public class BookItemController {
     private final BookService service;
+    private final BookHoldService holdService;
+    private final BookAvailabilityStream availabilityStream;
+    private final IdempotencyService idempotencyService;
+    private final CatalogETags eTags;
     // tidy the names  and order methods
     @Operation(summary = "Add a book item(copy) to database", description = "saves a book item(copy) to database")
     @ApiResponses(value = {
@@ -55,7 +76,8 @@ public class BookItemController {
             @RequestParam Map<String, String> params,
             @RequestParam(required = false, name = "bookItemId") UUID bookItemId,
             @RequestParam(required = false, name = "bookId") UUID bookId,
-            @PageableDefault(size = 10, page = 0) Pageable pageable
+            @PageableDefault(size = 10, page = 0) Pageable pageable,
+            WebRequest webRequest
     ) {
         var sortBy = params.get("sortBy");
         var sortFields = sortBy != null && !sortBy.isEmpty()
@@ -63,13 +85,58 @@ public class BookItemController {
                 : List.of("createdAt");
 
         var direction = Sort.Direction.fromOptionalString(params.get("order")).orElse(Sort.Direction.DESC);
+        if (params.containsKey("cursor")) {
+            var keysetIds = service.getBookItemIdsAfter(bookItemId, bookId, params.get("status"), params.get("startDate"),
+                    params.get("endDate"), KeysetCursor.decode(params.get("cursor"), direction), pageable.getPageSize());
+            if (webRequest.checkNotModified(eTags.forBookItems(keysetIds.items(), keysetIds.nextCursor()))) {
+                return null;
+            }
+            return new Page<>(pageable.getPageSize(), service.getBookItemsByIds(keysetIds.items()), keysetIds.nextCursor());
+        }
         var sort = Sort.by(sortFields.stream().map(field -> new Sort.Order(direction, field)).toList());
 
-        var availableBooks = service.getBookItems(bookItemId, bookId, params.get("status"), params.get("startDate"),
-                params.get("endDate"), PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
+        var countMode = Optional.ofNullable(Utils.convertToEnum(params.get("count"), CountMode.class)).orElse(CountMode.EXACT);
+        var ids = service.getBookItemIds(bookItemId, bookId, params.get("status"), params.get("startDate"),
+                params.get("endDate"), PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort), countMode);
+        if (webRequest.checkNotModified(eTags.forBookItems(ids.items(), ids.total()))) {
+            return null;
+        }
+
+        return new Page<>(pageable.getPageSize(), pageable.getPageNumber(), ids.total(), service.getBookItemsByIds(ids.items()));
+    }
+
+    @Operation(summary = "Get history of book items(copies) within a time range",
+            description = "retrieve borrow/return/add actions with ACTION_AT in [startDate, endDate), endDate defaults to now")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "400", description = "when startDate is missing")
+    }
+    )
+    @GetMapping("/history")
+    public Page<BookItemHistoryDto> getBookItemHistory(
+            @RequestParam(name = "startDate") String startDate,
+            @RequestParam(required = false, name = "endDate") String endDate,
+            @PageableDefault(size = 10, page = 0) Pageable pageable
+    ) {
+        var history = service.getBookItemHistory(startDate, endDate,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "actionAt")));
+
+        return new Page<>(history.getSize(), history.getNumber(), history.getTotalElements(),
+                history.get().collect(Collectors.toList()));
+    }
 
-        return new Page<>(availableBooks.getSize(), availableBooks.getNumber(), availableBooks.getTotalElements(),
-                availableBooks.get().collect(Collectors.toList()));
+    @Operation(summary = "Stream status changes of book items(copies) of the given books",
+            description = "Server-Sent Events stream, sends a 'status' event for every committed borrow/return/add of a copy" +
+                    " of one of the books, instead of polling the book items")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream opened"),
+            @ApiResponse(responseCode = "400", description = "when no book id is given or an id is empty"),
+            @ApiResponse(responseCode = "503", description = "when the subscriber limit is reached")
+    }
+    )
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(@RequestParam("bookId") List<UUID> bookIds) {
+        return availabilityStream.subscribe(bookIds);
     }
 
     @Operation(summary = "Update book item status to BORROWED, and populating  a borrower", description = "updates status and sets a" +
@@ -82,17 +149,87 @@ public class BookItemController {
     @PatchMapping("/{bookItemId}/borrowing")
     public ResponseEntity<Void> borrowBookItem(@PathVariable(required = false, value = "bookItemId") final UUID bookItemId,
                                                @RequestParam("userId") UUID userId,
-                                               @RequestParam("status") BookItemStatus status
+                                               @RequestParam("status") BookItemStatus status,
+                                               @RequestHeader(required = false, name = IDEMPOTENCY_KEY_HEADER_NAME) String idempotencyKey,
+                                               HttpServletRequest request
     ) {
-        service.borrowActionBookItemById(bookItemId, userId, status);
-        return ResponseEntity.status(202).build();
+        return idempotencyService.execute(idempotencyKey, fingerprint(request), Void.class, () -> {
+            service.borrowActionBookItemById(bookItemId, userId, status);
+            return ResponseEntity.status(202).build();
+        });
     }
 
     @PatchMapping("/{bookId}/borrowingAny")
     public ResponseEntity<BookItemIdDto> borrowAnyAvailableBookItem(@PathVariable(required = false, value = "bookId") final UUID bookId,
-                                                                    @RequestParam("userId") UUID userId
+                                                                    @RequestParam("userId") UUID userId,
+                                                                    @RequestHeader(required = false, name = IDEMPOTENCY_KEY_HEADER_NAME) String idempotencyKey,
+                                                                    HttpServletRequest request
     ) {
-        return ResponseEntity.status(202).body(service.borrowActionForAnyBookItem(bookId, userId));
+        return idempotencyService.execute(idempotencyKey, fingerprint(request), BookItemIdDto.class,
+                () -> ResponseEntity.status(202).body(service.borrowActionForAnyBookItem(bookId, userId)));
+    }
+
+    @Operation(summary = "Borrow any available book item(copy) or wait for one", description = "borrows any available" +
+            " copy of the book, when there is none puts the user on the waitlist of the book, a returned copy goes" +
+            " to the head of the waitlist")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Hold created, FULFILLED with the borrowed copy or WAITING with its position"),
+            @ApiResponse(responseCode = "400", description = "when the user is already waiting for the book, the book or user is not found")
+    }
+    )
+    @PostMapping("/{bookId}/holds")
+    public ResponseEntity<BookHoldDto> placeHold(@PathVariable(value = "bookId") final UUID bookId,
+                                                 @RequestParam("userId") UUID userId,
+                                                 @RequestParam(required = false, name = "priority", defaultValue = "0") int priority
+    ) {
+        return ResponseEntity.status(201).body(holdService.placeHold(bookId, userId, priority));
+    }
+
+    @Operation(summary = "Get a hold", description = "retrieve a hold with its position in the waitlist while WAITING")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved"),
+            @ApiResponse(responseCode = "404", description = "not found - when id of hold is not found")
+    }
+    )
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<BookHoldDto> getHold(@PathVariable(value = "holdId") final UUID holdId) {
+        return ResponseEntity.ok(holdService.getHold(holdId));
+    }
+
+    @Operation(summary = "Cancel a waiting hold", description = "removes the user from the waitlist")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Successfully cancelled"),
+            @ApiResponse(responseCode = "404", description = "not found - when id of hold is not found or it is not WAITING")
+    }
+    )
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<Void> cancelHold(@PathVariable(value = "holdId") final UUID holdId) {
+        holdService.cancelHold(holdId);
+        return ResponseEntity.status(204).build();
+    }
+
+    @Operation(summary = "Borrow a batch of book items(copies)", description = "updates status to IN_PROGRESS and sets a" +
+            " borrower for every pair of book item and user in one transaction, reports the result of every pair")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the result of every item"),
+            @ApiResponse(responseCode = "400", description = "when the batch is empty, exceeds 100 items or mandatory param is missing")
+    }
+    )
+    @PatchMapping("/batch/borrowing")
+    public ResponseEntity<List<BookItemBatchResultDto>> borrowBookItems(@Valid @RequestBody BookItemBatchRequest batchRequest) {
+        return ResponseEntity.ok(service.borrowBookItems(batchRequest.getItems()));
+    }
+
+    @Operation(summary = "Return a batch of book items(copies)", description = "updates status to AVAILABLE and sets" +
+            " RETURNED DATE for every pair of book item and user in one transaction, reports the result of every pair")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see the result of every item"),
+            @ApiResponse(responseCode = "400", description = "when the batch is empty, exceeds 100 items or mandatory param is missing")
+    }
+    )
+    @PatchMapping("/batch/return")
+    public ResponseEntity<List<BookItemBatchResultDto>> returnBookItems(@Valid @RequestBody BookItemBatchRequest batchRequest) {
+        return ResponseEntity.ok(service.returnBookItems(batchRequest.getItems()));
     }
 
     @Operation(summary = "Update book item status to RETURNED", description = "updates status to RETURNED and SETTING RETURNED DATE")
@@ -103,18 +240,26 @@ public class BookItemController {
     )
     @PatchMapping("/{bookItemId}/return")
     public ResponseEntity<Void> returnBookItem(@PathVariable(required = false, value = "bookItemId") final UUID bookItemId,
-                                               @RequestParam("userId") UUID userId
+                                               @RequestParam("userId") UUID userId,
+                                               @RequestHeader(required = false, name = IDEMPOTENCY_KEY_HEADER_NAME) String idempotencyKey,
+                                               HttpServletRequest request
     ) {
-        service.returnActionForBookItem(bookItemId, userId);
-        return ResponseEntity.status(202).build();
+        return idempotencyService.execute(idempotencyKey, fingerprint(request), Void.class, () -> {
+            service.returnActionForBookItem(bookItemId, userId);
+            return ResponseEntity.status(202).build();
+        });
     }
 
     @PatchMapping("/{bookItemId}/returnTransaction")
     public ResponseEntity<Void> returnBookItemTransaction(@PathVariable(required = false, value = "bookItemId") final UUID bookItemId,
-                                                          @RequestParam("userId") UUID userId
+                                                          @RequestParam("userId") UUID userId,
+                                                          @RequestHeader(required = false, name = IDEMPOTENCY_KEY_HEADER_NAME) String idempotencyKey,
+                                                          HttpServletRequest request
     ) {
-        service.returnActionForBookItemHibernateImpl(bookItemId, userId);
-        return ResponseEntity.status(202).build();
+        return idempotencyService.execute(idempotencyKey, fingerprint(request), Void.class, () -> {
+            service.returnActionForBookItemHibernateImpl(bookItemId, userId);
+            return ResponseEntity.status(202).build();
+        });
     }
 
     @DeleteMapping("/{id}")
@@ -128,4 +273,9 @@ public class BookItemController {
         service.removeAllBookItems();
         return ResponseEntity.status(204).build();
     }
+
+    private static String fingerprint(HttpServletRequest request) {
+        var query = request.getQueryString();
+        return request.getMethod() + " " + request.getRequestURI() + (query == null ? "" : "?" + query);
+    }
 }
@@ -7,24 +7,40 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import net.library.model.dto.UserDto;
 import net.library.model.mapper.UserMapper;
+import net.library.model.request.CountMode;
+import net.library.model.request.DataFormat;
+import net.library.model.request.UserBulkUpdateRequest;
 import net.library.model.request.UserRequest;
+import net.library.model.request.UserSearchMode;
+import net.library.model.response.BulkUpdateJob;
 import net.library.model.response.Page;
+import net.library.model.response.UserImportReport;
 import net.library.repository.enums.ModerationState;
 import net.library.repository.enums.RoleType;
 import net.library.repository.enums.UserState;
+import net.library.service.ExportLimiter;
+import net.library.service.UserExporter;
+import net.library.service.UserImporter;
 import net.library.service.UserService;
+import net.library.util.KeysetCursor;
+import net.library.util.Utils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
+import static net.library.util.HttpUtil.GLOBAL_BASE_URI;
 import static net.library.util.HttpUtil.USERS;
 
 @RequiredArgsConstructor
@@ -33,6 +49,9 @@ import static net.library.util.HttpUtil.USERS;
 public class UserController {
 
     private final UserService service;
+    private final UserExporter exporter;
+    private final ExportLimiter exportLimiter;
+    private final UserImporter importer;
     //group  contollers by get, post, put,patch, delete
     // change user current user(update) put
     @Operation(summary = "Add a new user",
@@ -58,6 +77,11 @@ public class UserController {
      * Pagination parameters are supported through pageable parameter allowing users
      * to retrieve specific pages and set specific size for pages to be returned
      * sorting is present by default
+     * count param (exact by default) sets how total is computed: exact, estimate, or none to skip the count query
+     * <p>
+     * With the 'cursor' param (empty for the first page) users are paged by the keyset "createdAt", "id" instead:
+     * sortBy and page are ignored, total is not counted, and nextCursor of the response is sent as 'cursor'
+     * to get the next page until it is null
      *
      * @param params   a map of parameters where keys are the names of filters("start_time starting"), and the values are
      *                 values of filters ("2012-01-01T00:00")
@@ -86,14 +110,75 @@ public class UserController {
                 : List.of("username", "createdAt");
 
         var direction = Sort.Direction.fromOptionalString(params.get("order")).orElse(Sort.Direction.DESC);
+        if (params.containsKey("cursor")) {
+            var keysetPage = service.getAllByFilterAfter(params.get("start_time"), params.get("end_time"), params.get("username"),
+                    params.get("moderation_state"), params.get("user_state"), params.get("role"),
+                    KeysetCursor.decode(params.get("cursor"), direction), pageable.getPageSize());
+            return new Page<>(pageable.getPageSize(), keysetPage.items(), keysetPage.nextCursor());
+        }
         var sort = Sort.by(sortFields.stream().map(field -> new Sort.Order(direction, field)).toList());
 
+        var countMode = Optional.ofNullable(Utils.convertToEnum(params.get("count"), CountMode.class)).orElse(CountMode.EXACT);
         var users = service.getAllByFilter(params.get("start_time"),
                 params.get("end_time"), params.get("username"), params.get("moderation_state"), params.get("user_state"),
-                params.get("role"), PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
+                params.get("role"), PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort), countMode);
+
+        return new Page<>(pageable.getPageSize(), pageable.getPageNumber(), users.total(), users.items());
+    }
+
+    @Operation(summary = "Search users",
+            description = "search users by username, name, surname and email, most similar first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "found the users successfully"),
+            @ApiResponse(responseCode = "400", description = "q is shorter than 3 letters or mode is not substring, prefix or fuzzy")
+    }
+    )
+    @GetMapping("/search")
+    public Page<UserDto> searchUsers(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "mode", defaultValue = "substring") UserSearchMode mode,
+            @RequestParam(name = "count", required = false) String count,
+            @PageableDefault(page = 0, size = 10) Pageable pageable
+    ) {
+        var countMode = Optional.ofNullable(Utils.convertToEnum(count, CountMode.class)).orElse(CountMode.EXACT);
+        var users = service.search(query, mode, pageable, countMode);
+        return new Page<>(pageable.getPageSize(), pageable.getPageNumber(), users.total(), users.items());
+    }
+
+    @Operation(summary = "Export all users",
+            description = "streams all users as NDJSON (one user per line)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully exported"),
+            @ApiResponse(responseCode = "503", description = "when too many exports are in progress")
+    }
+    )
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        var permit = exportLimiter.acquire();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"")
+                .body(outputStream -> {
+                    try (permit) {
+                        exporter.export(outputStream);
+                    }
+                });
+    }
 
-        return new Page<>(users.getSize(), users.getNumber(), users.getTotalElements(),
-                users.get().collect(Collectors.toList()));
+    @Operation(summary = "Register users in bulk", description = "registers users from CSV or NDJSON, "
+            + "rows which are not valid or whose username is taken are reported instead of failing the import")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully imported"),
+            @ApiResponse(responseCode = "400", description = "when format is neither ndjson nor csv or the CSV header is not valid")
+    }
+    )
+    @PostMapping("/import")
+    public UserImportReport importUsers(
+            @RequestParam(name = "format", defaultValue = "ndjson") DataFormat format,
+            InputStream body
+    ) {
+        return importer.importUsers(format, body);
     }
 
     @Operation(summary = "Get a user by a user id",
@@ -153,6 +238,36 @@ public class UserController {
         return ResponseEntity.status(202).build();
     }
 
+    @Operation(summary = "Update the states and role of all users matching the filters",
+            description = "starts a background update of moderation state, user state and/or role of the users "
+                    + "selected by the filters of 'Get all the users', committed in chunks")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "the update is started, its progress is at the Location"),
+            @ApiResponse(responseCode = "400", description = "a filter is not valid or the body sets nothing")
+    }
+    )
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkUpdateJob> bulkUpdateUsers(@RequestParam Map<String, String> params,
+                                                         @RequestBody UserBulkUpdateRequest request) {
+        var job = service.bulkUpdate(params.get("start_time"), params.get("end_time"), params.get("username"),
+                params.get("moderation_state"), params.get("user_state"), params.get("role"), request);
+        return ResponseEntity.status(202)
+                .header(HttpHeaders.LOCATION, GLOBAL_BASE_URI + USERS + "/bulk/" + job.getJobId())
+                .body(job);
+    }
+
+    @Operation(summary = "Get the progress of a bulk update",
+            description = "retrieve the status and the number of updated users of a bulk update")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "retrieved the progress successfully"),
+            @ApiResponse(responseCode = "404", description = "the bulk update is not found or expired")
+    }
+    )
+    @GetMapping("/bulk/{job_id}")
+    public BulkUpdateJob getBulkUpdate(@PathVariable("job_id") final UUID jobId) {
+        return service.getBulkUpdate(jobId);
+    }
+
     @Operation(summary = "Delete a specific user",
             description = "Remove a specific user by the user id")
     @ApiResponses(value = {
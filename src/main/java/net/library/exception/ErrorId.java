@@ -8,5 +8,11 @@ public class ErrorId {
     protected static final Integer FILTER_ID = 105;
     protected static final Integer WRONG_STATE_ID = 106;
     protected static final Integer USER_NOT_FOUND_ID = 107;
+    protected static final Integer TOO_MANY_SUBSCRIBERS_ID = 108;
+    protected static final Integer IDEMPOTENCY_KEY_MISUSE_ID = 109;
+    protected static final Integer IDEMPOTENCY_KEY_IN_PROGRESS_ID = 111;
+    protected static final Integer INVALID_CURSOR_ID = 112;
+    protected static final Integer INVALID_IMPORT_ID = 113;
+    protected static final Integer TOO_MANY_EXPORTS_ID = 114;
 }
 
@@ -8,4 +8,10 @@ public class ErrorMessage {
     protected static final String FILTER_LENGTH = "Filter length should be more that 2 letters";
     protected static final String WRONG_STATE = "wrong state or role";
     protected static final String USER_NOT_FOUND = "User is not found";
+    protected static final String TOO_MANY_SUBSCRIBERS = "Too many subscribers, retry later";
+    protected static final String IDEMPOTENCY_KEY_MISUSE = "Idempotency key is too long or used with another request";
+    protected static final String IDEMPOTENCY_KEY_IN_PROGRESS = "Request with this idempotency key is in progress";
+    protected static final String INVALID_CURSOR = "Cursor is not valid, start again without it";
+    protected static final String INVALID_IMPORT = "Import file is not valid";
+    protected static final String TOO_MANY_EXPORTS = "Too many exports in progress, retry later";
 }
\ No newline at end of file
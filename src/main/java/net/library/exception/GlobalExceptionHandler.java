@@ -62,6 +62,36 @@ public class GlobalExceptionHandler {
         return httpErrorResponseBuilder(ex, WRONG_STATE_ID, WRONG_STATE, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(TooManySubscribersException.class)
+    public ResponseEntity<HttpErrorResponse> tooManySubscribers(Exception ex) {
+        return httpErrorResponseBuilder(ex, TOO_MANY_SUBSCRIBERS_ID, TOO_MANY_SUBSCRIBERS, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(TooManyExportsException.class)
+    public ResponseEntity<HttpErrorResponse> tooManyExports(Exception ex) {
+        return httpErrorResponseBuilder(ex, TOO_MANY_EXPORTS_ID, TOO_MANY_EXPORTS, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(IdempotencyKeyMisuseException.class)
+    public ResponseEntity<HttpErrorResponse> idempotencyKeyMisuse(Exception ex) {
+        return httpErrorResponseBuilder(ex, IDEMPOTENCY_KEY_MISUSE_ID, IDEMPOTENCY_KEY_MISUSE, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<HttpErrorResponse> idempotencyKeyInProgress(Exception ex) {
+        return httpErrorResponseBuilder(ex, IDEMPOTENCY_KEY_IN_PROGRESS_ID, IDEMPOTENCY_KEY_IN_PROGRESS, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<HttpErrorResponse> invalidCursor(Exception ex) {
+        return httpErrorResponseBuilder(ex, INVALID_CURSOR_ID, INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<HttpErrorResponse> invalidImport(Exception ex) {
+        return httpErrorResponseBuilder(ex, INVALID_IMPORT_ID, INVALID_IMPORT, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<HttpErrorResponse> notFound() {
         return ResponseEntity.notFound().build();
@@ -0,0 +1,8 @@
+package net.library.exception;
+
+public class IdempotencyKeyMisuseException extends RuntimeException {
+
+    public IdempotencyKeyMisuseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package net.library.exception;
+
+public class TooManyExportsException extends RuntimeException {
+
+    public TooManyExportsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package net.library.exception;
+
+public class TooManySubscribersException extends RuntimeException {
+
+    public TooManySubscribersException(String message) {
+        super(message);
+    }
+}
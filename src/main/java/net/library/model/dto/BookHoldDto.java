@@ -0,0 +1,29 @@
+package net.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import net.library.repository.enums.HoldStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class BookHoldDto {
+
+    private UUID holdId;
+
+    private UUID bookId;
+
+    private UUID userId;
+
+    private UUID bookItemId;
+
+    private HoldStatus status;
+
+    private Integer position;
+
+    private LocalDateTime fulfilledAt;
+}
@@ -0,0 +1,19 @@
+package net.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class BookItemBatchResultDto {
+
+    private UUID bookItemId;
+
+    private UUID userId;
+
+    private boolean success;
+}
@@ -0,0 +1,25 @@
+package net.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import net.library.repository.enums.BookAction;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class BookItemHistoryDto {
+
+    private UUID id;
+
+    private UUID bookItemId;
+
+    private UUID userId;
+
+    private LocalDateTime actionAt;
+
+    private BookAction actionType;
+}
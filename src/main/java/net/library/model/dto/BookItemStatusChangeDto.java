@@ -0,0 +1,26 @@
+package net.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import net.library.repository.enums.BookAction;
+import net.library.repository.enums.BookItemStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@Builder
+public class BookItemStatusChangeDto {
+
+    private UUID bookId;
+
+    private UUID bookItemId;
+
+    private BookItemStatus status;
+
+    private BookAction action;
+
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,21 @@
+package net.library.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookSuggestionDto {
+
+    private UUID bookId;
+
+    private String title;
+
+    private String author;
+}
@@ -4,9 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.experimental.Accessors;
-import org.hibernate.annotations.Fetch;
-import org.hibernate.annotations.FetchMode;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -49,13 +49,22 @@ public class Book {
     @Column(name = "deleted_at")
     private LocalDateTime deletedAt;
 
-    @OneToMany(fetch = FetchType.EAGER)
-    @Fetch(FetchMode.JOIN)
+    /**
+     * Not loaded with the book, copies of a page of books are loaded in one query
+     * by {@link net.library.repository.BookItemRepository#findAllWithUserByBookIdIn}.
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id",referencedColumnName = "id")
     private List<BookItem> bookItemList;
 
-    @OneToMany(fetch = FetchType.EAGER)
-    @Fetch(FetchMode.JOIN)
+    /**
+     * Not loaded with the book, see {@link net.library.repository.BookGenresRepository#findAllWithGenreByBookIdIn}.
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @OneToMany(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id",referencedColumnName = "id")
     private List<BookGenre> bookGenres;
 }
@@ -0,0 +1,46 @@
+package net.library.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import net.library.repository.enums.HoldStatus;
+import org.hibernate.annotations.JdbcType;
+import org.hibernate.dialect.PostgreSQLEnumJdbcType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Entity
+@Accessors(chain = true)
+@Table(name = "book_holds")
+public class BookHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "id")
+    private UUID id;
+
+    @Column(name = "book_id")
+    private UUID bookId;
+
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "book_item_id")
+    private UUID bookItemId;
+
+    @Enumerated
+    @JdbcType(PostgreSQLEnumJdbcType.class)
+    @Column(name = "status")
+    private HoldStatus status;
+
+    @Column(name = "priority")
+    private int priority;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "fulfilled_at")
+    private LocalDateTime fulfilledAt;
+}
@@ -0,0 +1,28 @@
+package net.library.model.event;
+
+import net.library.repository.enums.BookAction;
+import net.library.repository.enums.BookItemStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published by {@code BookService} whenever a book item (copy) changes its status.
+ * Listeners are expected to react after the transaction which changed the copy is committed.
+ *
+ * @param bookId              book (title) the copy belongs to
+ * @param bookItemId          copy which changed
+ * @param userId              borrower, null when the copy is added to the library
+ * @param status              new status of the copy
+ * @param previouslyAvailable whether the copy was 'AVAILABLE' before the change, false for a copy added to the library
+ * @param action              action which led to the change
+ * @param changedAt           time of the change
+ */
+public record BookItemStatusChangedEvent(UUID bookId,
+                                         UUID bookItemId,
+                                         UUID userId,
+                                         BookItemStatus status,
+                                         boolean previouslyAvailable,
+                                         BookAction action,
+                                         LocalDateTime changedAt) {
+}
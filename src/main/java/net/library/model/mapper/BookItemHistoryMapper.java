@@ -0,0 +1,14 @@
+package net.library.model.mapper;
+
+import net.library.model.dto.BookItemHistoryDto;
+import net.library.model.entity.BookItemHistory;
+
+
+public class BookItemHistoryMapper {
+
+    public static BookItemHistoryDto toDto(BookItemHistory history) {
+
+        return new BookItemHistoryDto(history.getId(), history.getItemId(), history.getUserId(),
+                history.getActionAt(), history.getActionType());
+    }
+}
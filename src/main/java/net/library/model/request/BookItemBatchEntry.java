@@ -0,0 +1,20 @@
+package net.library.model.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookItemBatchEntry {
+
+    @NotNull
+    private UUID bookItemId;
+
+    @NotNull
+    private UUID userId;
+}
@@ -0,0 +1,22 @@
+package net.library.model.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookItemBatchRequest {
+
+    @NotNull
+    @NotEmpty
+    @Size(max = 100, message = "Batch must not exceed 100 items.")
+    private List<@Valid @NotNull BookItemBatchEntry> items;
+}
@@ -0,0 +1,19 @@
+package net.library.model.request;
+
+/**
+ * How 'total' of an offset page is computed, set with the 'count' request param.
+ */
+public enum CountMode {
+    /**
+     * count(*) with the filters of the page, the default
+     */
+    EXACT,
+    /**
+     * planner statistics of the table when the page is not filtered, otherwise an exact count cached for a while
+     */
+    ESTIMATE,
+    /**
+     * no count, 'total' is null
+     */
+    NONE
+}
@@ -0,0 +1,17 @@
+package net.library.model.request;
+
+/**
+ * Format of bulk exports and imports.
+ */
+public enum DataFormat {
+    /**
+     * one JSON document per line, 'application/x-ndjson': a book with its copies and genres when exporting the catalog,
+     * a book or user request when importing
+     */
+    NDJSON,
+    /**
+     * comma separated values: one line per copy with the columns of its book when exporting the catalog
+     * (books without copies have one line with empty copy columns), a header naming the columns when importing
+     */
+    CSV
+}
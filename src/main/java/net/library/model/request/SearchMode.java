@@ -0,0 +1,19 @@
+package net.library.model.request;
+
+/**
+ * How the 'q' param of a book search is matched, set with the 'mode' request param.
+ */
+public enum SearchMode {
+    /**
+     * all words, in any order, the default; supports "quoted phrases", 'or' and '-excluded' words
+     */
+    WORDS,
+    /**
+     * all words, the last one may be incomplete, for search as you type
+     */
+    PREFIX,
+    /**
+     * the words next to each other in the given order
+     */
+    PHRASE
+}
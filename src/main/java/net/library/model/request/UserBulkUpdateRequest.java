@@ -0,0 +1,23 @@
+package net.library.model.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.library.repository.enums.ModerationState;
+import net.library.repository.enums.RoleType;
+import net.library.repository.enums.UserState;
+
+/**
+ * Values set on every user matching the filters of a bulk update, null values are left as they are.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserBulkUpdateRequest {
+
+    private ModerationState moderationState;
+
+    private UserState userState;
+
+    private RoleType roleType;
+}
@@ -0,0 +1,20 @@
+package net.library.model.request;
+
+/**
+ * How the 'q' param of a user search is matched against username, name, surname and email,
+ * set with the 'mode' request param.
+ */
+public enum UserSearchMode {
+    /**
+     * contains q, case-insensitive, the default
+     */
+    SUBSTRING,
+    /**
+     * starts with q, case-insensitive
+     */
+    PREFIX,
+    /**
+     * similar to q (trigram similarity above 'pg_trgm.similarity_threshold'), tolerates typos
+     */
+    FUZZY
+}
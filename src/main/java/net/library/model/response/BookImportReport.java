@@ -0,0 +1,36 @@
+package net.library.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import of books: 'received' rows are either 'imported' (with 'copies' added for them),
+ * 'duplicates' of books already stored or earlier in the file, or 'rejected'. Only the first rejections are listed,
+ * 'rejected' counts all of them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookImportReport {
+
+    private long received;
+
+    private long imported;
+
+    private long copies;
+
+    private long duplicates;
+
+    private long rejected;
+
+    private List<ImportRejection> rejections;
+
+    private long durationMs;
+
+    private double rowsPerSecond;
+}
@@ -1,8 +1,10 @@
 package net.library.model.response;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import net.library.model.dto.BookGenreDto;
 import net.library.model.dto.BookItemDto;
 
@@ -11,6 +13,8 @@ import java.util.List;
 import java.util.UUID;
 
 @Data
+@AllArgsConstructor
+@NoArgsConstructor
 @Builder
 public class BookResponse {
 
@@ -0,0 +1,42 @@
+package net.library.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Progress of a bulk update running in the background: 'matched' users were found by the filters when the job
+ * started, 'updated' of them are committed so far, in 'chunks' transactions.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkUpdateJob {
+
+    private UUID jobId;
+
+    private Status status;
+
+    private long matched;
+
+    private long updated;
+
+    private long chunks;
+
+    private String error;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
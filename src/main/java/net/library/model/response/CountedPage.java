@@ -0,0 +1,9 @@
+package net.library.model.response;
+
+import java.util.List;
+
+/**
+ * One page of offset pagination, 'total' is null when it is not counted (see {@link net.library.model.request.CountMode}).
+ */
+public record CountedPage<T>(List<T> items, Long total) {
+}
@@ -0,0 +1,10 @@
+package net.library.model.response;
+
+/**
+ * Row of an imported file which was not imported.
+ *
+ * @param line   number of the line in the file, starting from 1
+ * @param reason why the row was rejected
+ */
+public record ImportRejection(long line, String reason) {
+}
@@ -0,0 +1,9 @@
+package net.library.model.response;
+
+import java.util.List;
+
+/**
+ * One page of keyset (cursor) pagination, 'nextCursor' is null on the last page.
+ */
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+}
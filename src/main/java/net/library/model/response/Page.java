@@ -4,17 +4,28 @@ import lombok.Data;
 
 import java.util.List;
 
+/**
+ * Offset pages have 'pageNumber' and 'total'. Cursor pages have neither, counting would cost
+ * the full scan the cursor avoids; they have 'nextCursor' instead, which is null on the last page.
+ */
 @Data
 public class Page<T> {
     private Integer pageSize;
     private Integer pageNumber;
-    private long total;
+    private Long total;
     private List<T> items;
+    private String nextCursor;
 
-    public Page(Integer pageSize, Integer pageNumber, long totalItems, List<T> items) {
+    public Page(Integer pageSize, Integer pageNumber, Long totalItems, List<T> items) {
         this.pageSize = pageSize;
         this.pageNumber = pageNumber;
         this.total = totalItems;
         this.items = items;
     }
+
+    public Page(Integer pageSize, List<T> items, String nextCursor) {
+        this.pageSize = pageSize;
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
 }
@@ -0,0 +1,31 @@
+package net.library.model.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk registration of users: 'received' rows are either 'imported' or 'rejected', including rows
+ * whose username is taken. Only the first rejections are listed, 'rejected' counts all of them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserImportReport {
+
+    private long received;
+
+    private long imported;
+
+    private long rejected;
+
+    private List<ImportRejection> rejections;
+
+    private long durationMs;
+
+    private double rowsPerSecond;
+}
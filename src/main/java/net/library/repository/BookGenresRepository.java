@@ -2,8 +2,18 @@ package net.library.repository;
 
 import net.library.model.entity.BookGenre;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface BookGenresRepository extends JpaRepository<BookGenre, UUID> {
+
+    /**
+     * Genres of the given books with their 'GENRES' row fetched in the same query.
+     */
+    @Query("SELECT bg FROM BookGenre bg JOIN FETCH bg.genre WHERE bg.book_id IN :bookIds")
+    List<BookGenre> findAllWithGenreByBookIdIn(@Param("bookIds") Collection<UUID> bookIds);
 }
@@ -0,0 +1,84 @@
+package net.library.repository;
+
+import net.library.model.entity.BookHold;
+import net.library.repository.projection.BookItemChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface BookHoldRepository extends JpaRepository<BookHold, UUID> {
+
+    /**
+     * Hands an 'AVAILABLE' copy of the book to the head of its waitlist (highest priority, then oldest hold)
+     * and marks the hold as fulfilled, in one statement. Holds and copies locked by concurrent transactions are skipped.
+     * An empty list means there is no waiting hold or no available copy.
+     */
+    @Modifying
+    @Query(value = """
+                WITH next_hold AS (
+                    SELECT id, user_id
+                    FROM book_holds
+                    WHERE book_id = :bookId AND status = 'WAITING'
+                    ORDER BY priority DESC, created_at, id
+                    LIMIT 1
+                    FOR UPDATE SKIP LOCKED
+                ), copy AS (
+                    SELECT id
+                    FROM book_items
+                    WHERE book_id = :bookId AND status = 'AVAILABLE'
+                    LIMIT 1
+                    FOR UPDATE SKIP LOCKED
+                ), borrowed AS (
+                    UPDATE book_items bi
+                    SET user_id = nh.user_id,
+                        status = 'IN_PROGRESS',
+                        borrowed_at = :currentTime,
+                        returned_at = NULL,
+                        updated_at = CURRENT_TIMESTAMP,
+                        due_date = :dueDate
+                    FROM next_hold nh, copy c
+                    WHERE bi.id = c.id
+                    RETURNING bi.id, bi.book_id, bi.user_id
+                )
+                UPDATE book_holds h
+                SET status = 'FULFILLED',
+                    book_item_id = b.id,
+                    fulfilled_at = :currentTime
+                FROM borrowed b, next_hold nh
+                WHERE h.id = nh.id
+                RETURNING b.id AS "bookItemId", b.book_id AS "bookId", b.user_id AS "userId";
+            """, nativeQuery = true)
+    List<BookItemChange> assignNextHold(@Param("bookId") UUID bookId, @Param("currentTime") LocalDateTime currentTime,
+                                        @Param("dueDate") LocalDate dueDate);
+
+    /**
+     * Position of a waiting hold in the waitlist of its book, starting from 1.
+     */
+    @Query(value = """
+                SELECT COUNT(*) + 1
+                FROM book_holds h
+                WHERE h.book_id = :bookId
+                  AND h.status = 'WAITING'
+                  AND (h.priority > :priority
+                      OR (h.priority = :priority AND (h.created_at, h.id) < (CAST(:createdAt AS timestamp), :holdId)))
+            """, nativeQuery = true)
+    long findPosition(@Param("bookId") UUID bookId, @Param("holdId") UUID holdId, @Param("priority") int priority,
+                     @Param("createdAt") LocalDateTime createdAt);
+
+    @Query(value = "SELECT DISTINCT book_id FROM book_holds WHERE status = 'WAITING'", nativeQuery = true)
+    List<UUID> findBookIdsWithWaitingHolds();
+
+    @Modifying
+    @Query(value = """
+                UPDATE book_holds
+                SET status = 'CANCELLED'
+                WHERE id = :holdId AND status = 'WAITING'
+            """, nativeQuery = true)
+    int cancelWaiting(@Param("holdId") UUID holdId);
+}
@@ -1,9 +1,18 @@
 package net.library.repository;
 
 import net.library.model.entity.BookItemHistory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 public interface BookItemHistoryRepository extends JpaRepository<BookItemHistory, UUID> {
+
+    /**
+     * Half-open range [from, to) on the partition key, so only the partitions covering the range are scanned.
+     */
+    Page<BookItemHistory> findAllByActionAtGreaterThanEqualAndActionAtLessThan(LocalDateTime from, LocalDateTime to,
+                                                                                Pageable pageable);
 }
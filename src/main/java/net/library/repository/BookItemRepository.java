@@ -1,15 +1,19 @@
 package net.library.repository;
 
 import net.library.model.entity.BookItem;
-import net.library.repository.enums.BookItemStatus;
+import net.library.repository.projection.BookAvailability;
+import net.library.repository.projection.BookItemChange;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -21,23 +25,136 @@ public interface BookItemRepository extends JpaRepository<BookItem, UUID>, JpaSp
             @Param("userId") UUID userId
     );
 
+    /**
+     * Copies of the given books with their borrowers fetched in the same query.
+     */
+    @Query("SELECT bi FROM BookItem bi LEFT JOIN FETCH bi.userId WHERE bi.bookId IN :bookIds")
+    List<BookItem> findAllWithUserByBookIdIn(@Param("bookIds") Collection<UUID> bookIds);
+
+    /**
+     * Copies by ids with their borrowers fetched in the same query: the borrower is an eager to-one association,
+     * loading the copies without the join selects every borrower on its own.
+     */
+    @Query("SELECT bi FROM BookItem bi LEFT JOIN FETCH bi.userId WHERE bi.id IN :ids")
+    List<BookItem> findAllWithUserByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Moves an 'AVAILABLE' copy to the given status and returns the id of the book the copy belongs to,
+     * an empty list means the copy is not found or is not available.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE book_items
+                SET user_id = :userId,
+                    status = CAST(:status AS book_item_status_types),
+                    borrowed_at = :currentTime,
+                    returned_at = NULL,
+                    updated_at = CURRENT_TIMESTAMP,
+                    due_date = :dueDate
+                WHERE id = :bookItemId AND status = 'AVAILABLE'
+                RETURNING book_id;
+            """, nativeQuery = true)
+    List<UUID> borrowAction(@Param("bookItemId") UUID bookItemId, @Param("userId") UUID userId, @Param("status") String status,
+                            @Param("currentTime") LocalDateTime currentTime, @Param("dueDate") LocalDate dueDate);
+
+    /**
+     * Returns the copy borrowed by the user and returns the id of the book the copy belongs to,
+     * an empty list means the copy is not found, is not borrowed by the user or is already returned.
+     */
+    @Modifying
+    @Query(value = """
+                UPDATE book_items
+                SET status = 'AVAILABLE',
+                    returned_at = :currentTime,
+                    updated_at = CURRENT_TIMESTAMP,
+                    due_date = NULL
+                WHERE user_id = :userId AND id = :bookItemId AND status <> 'AVAILABLE'
+                RETURNING book_id;
+            """, nativeQuery = true)
+    List<UUID> returnAction(@Param("bookItemId") UUID bookItemId, @Param("userId") UUID userId,
+                            @Param("currentTime") LocalDateTime currentTime);
+
+    /**
+     * Borrows a batch of copies in one statement, each copy goes to the user paired with it.
+     * Copies which are not 'AVAILABLE' and unknown users are skipped, only changed copies are returned.
+     * When a copy is requested several times, the first pair wins.
+     */
     @Modifying
-    @Query("UPDATE BookItem u SET u.userId.id=:userId,u.status=:status, u.borrowedAt=:currentTime,u.returnedAt=NULL,u.updatedAt=CURRENT_TIMESTAMP, u.dueDate=:dueDate WHERE u.id = :bookItemId AND u.status = :currentStatus")
-    int borrowAction(@Param("bookItemId") UUID bookItemId, @Param("userId") UUID userId, @Param("status") BookItemStatus status, LocalDateTime currentTime, LocalDate dueDate, @Param("currentStatus") BookItemStatus currentStatus);
+    @Query(value = """
+                UPDATE book_items bi
+                SET user_id = v.user_id,
+                    status = 'IN_PROGRESS',
+                    borrowed_at = :currentTime,
+                    returned_at = NULL,
+                    updated_at = CURRENT_TIMESTAMP,
+                    due_date = :dueDate
+                FROM (
+                    SELECT DISTINCT ON (t.item_id) t.item_id, t.user_id
+                    FROM unnest(CAST(:bookItemIds AS uuid[]), CAST(:userIds AS uuid[])) WITH ORDINALITY AS t(item_id, user_id, ord)
+                    ORDER BY t.item_id, t.ord
+                ) v
+                JOIN users u ON u.id = v.user_id
+                WHERE bi.id = v.item_id AND bi.status = 'AVAILABLE'
+                RETURNING bi.id AS "bookItemId", bi.book_id AS "bookId", bi.user_id AS "userId";
+            """, nativeQuery = true)
+    List<BookItemChange> borrowBatch(@Param("bookItemIds") UUID[] bookItemIds, @Param("userIds") UUID[] userIds,
+                                     @Param("currentTime") LocalDateTime currentTime, @Param("dueDate") LocalDate dueDate);
 
+    /**
+     * Returns a batch of copies in one statement, a copy is returned only by the user who borrowed it
+     * and only once.
+     * Only changed copies are returned.
+     */
     @Modifying
-    @Query("UPDATE BookItem u SET u.status='AVAILABLE', u.returnedAt=:currentTime,u.updatedAt=CURRENT_TIMESTAMP, u.dueDate=NULL WHERE u.userId.id=:userId AND u.id=:bookItemId")
-    int returnAction(@Param("bookItemId") UUID bookItemId, @Param("userId") UUID userId, LocalDateTime currentTime);
+    @Query(value = """
+                UPDATE book_items bi
+                SET status = 'AVAILABLE',
+                    returned_at = :currentTime,
+                    updated_at = CURRENT_TIMESTAMP,
+                    due_date = NULL
+                FROM unnest(CAST(:bookItemIds AS uuid[]), CAST(:userIds AS uuid[])) AS v(item_id, user_id)
+                WHERE bi.id = v.item_id AND bi.user_id = v.user_id AND bi.status <> 'AVAILABLE'
+                RETURNING bi.id AS "bookItemId", bi.book_id AS "bookId", bi.user_id AS "userId";
+            """, nativeQuery = true)
+    List<BookItemChange> returnBatch(@Param("bookItemIds") UUID[] bookItemIds, @Param("userIds") UUID[] userIds,
+                                     @Param("currentTime") LocalDateTime currentTime);
+
+    @Query(value = """
+                SELECT book_id AS "bookId", COUNT(*) FILTER (WHERE status = 'AVAILABLE') AS "available"
+                FROM book_items
+                GROUP BY book_id
+            """, nativeQuery = true)
+    List<BookAvailability> countAvailableByBookId();
 
     @Query("SELECT u FROM BookItem u WHERE u.status = 'AVAILABLE' AND u.bookId = :bookId")
     List<BookItem> findAvailableBooksByBookId(@Param("bookId") UUID bookId);
 
+    /**
+     * Whether the book has an 'AVAILABLE' copy, including copies locked by borrowers which have not committed yet:
+     * unlike {@link #selectAvailableBookItemIdAndUpdate} nothing is skipped, so false means no copy can be borrowed
+     * unless one is returned.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED, readOnly = true)
+    @Query(value = """
+                SELECT EXISTS (SELECT 1 FROM book_items WHERE status = 'AVAILABLE' AND book_id = :bookId);
+            """, nativeQuery = true)
+    boolean existsAvailableByBookId(@Param("bookId") UUID bookId);
+
+    /**
+     * Allocates one 'AVAILABLE' copy of the book to the user.
+     * Rows locked by concurrent borrowers are skipped ('SKIP LOCKED'), so parallel requests for the same
+     * title are handed different copies instead of queueing on the same row.
+     * Runs in READ COMMITTED: under REPEATABLE READ a copy taken by an already committed borrower would raise
+     * a serialization failure instead of being skipped.
+     */
     @Modifying
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     @Query(value = """
                 WITH available AS (
-                    SELECT id FROM book_items 
+                    SELECT id FROM book_items
                     WHERE status = 'AVAILABLE' AND book_id = :bookId
                     LIMIT 1
+                    FOR UPDATE SKIP LOCKED
                 )
                 UPDATE book_items
                 SET user_id = :userId, 
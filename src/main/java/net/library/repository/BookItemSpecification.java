@@ -16,11 +16,9 @@ public class BookItemSpecification {
             Predicate predicate = criteriaBuilder.conjunction();
 
             if (bookItemStatus != null) {
+                // bound as the native enum, a cast of the column to text would rule out indexes on 'STATUS'
                 predicate = criteriaBuilder.and(predicate,
-                        criteriaBuilder.equal(
-                                criteriaBuilder.function("text", String.class, root.get("status")),
-                                bookItemStatus.name()
-                        ));
+                        criteriaBuilder.equal(root.get("status"), bookItemStatus));
             }
 
             if (bookId != null) {
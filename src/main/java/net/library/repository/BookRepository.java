@@ -1,10 +1,83 @@
 package net.library.repository;
 
 import net.library.model.entity.Book;
+import net.library.repository.projection.BookTitle;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface BookRepository extends JpaRepository<Book, UUID>, JpaSpecificationExecutor<Book> {
+
+    /**
+     * First phase of the books listing: a page of book ids, paged and sorted by the database
+     * without joining copies or genres.
+     */
+    @Query(value = "SELECT b.id FROM Book b", countQuery = "SELECT COUNT(b) FROM Book b")
+    Page<UUID> findPageOfIds(Pageable pageable);
+
+    /**
+     * Same as {@link #findPageOfIds} without the count query.
+     */
+    @Query("SELECT b.id FROM Book b")
+    Slice<UUID> findSliceOfIds(Pageable pageable);
+
+    /**
+     * Titles and authors of all books, the source of {@link net.library.service.BookTypeahead}.
+     */
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author FROM Book b")
+    List<BookTitle> findAllTitles();
+
+    /**
+     * Book as a JSON document in the shape of {@link net.library.model.response.BookResponse},
+     * copies with their borrowers and genres are aggregated by Postgres; the books table is aliased 'b'.
+     */
+    String BOOK_DOCUMENT = """
+            json_build_object(
+                'bookId', b.id,
+                'title', b.title,
+                'author', b.author,
+                'description', b.description,
+                'edition', b.edition,
+                'publicationyYear', b.publication_year,
+                'updatedAt', b.updated_at,
+                'createdAt', b.created_at,
+                'deletedAt', b.deleted_at,
+                'bookItems', COALESCE((
+                    SELECT json_agg(json_build_object(
+                               'bookItemId', bi.id,
+                               'user', CASE WHEN u.id IS NULL THEN NULL ELSE json_build_object(
+                                   'id', u.id,
+                                   'username', u.username,
+                                   'name', u.name,
+                                   'surname', u.surname,
+                                   'email', u.email,
+                                   'phoneNumber', u.phone_number,
+                                   'address', u.address) END,
+                               'status', bi.status,
+                               'borrowedAt', bi.borrowed_at,
+                               'returnedAt', bi.returned_at))
+                    FROM book_items bi
+                    LEFT JOIN users u ON u.id = bi.user_id
+                    WHERE bi.book_id = b.id), CAST('[]' AS json)),
+                'bookGenres', COALESCE((
+                    SELECT json_agg(json_build_object('genreName', g.name))
+                    FROM book_genres bg
+                    JOIN genres g ON g.id = bg.genre_id
+                    WHERE bg.book_id = b.id), CAST('[]' AS json))
+            )
+            """;
+
+    /**
+     * Books as JSON documents, see {@link #BOOK_DOCUMENT}.
+     */
+    @Query(value = "SELECT CAST(" + BOOK_DOCUMENT + " AS text) FROM books b WHERE b.id IN (:bookIds)", nativeQuery = true)
+    List<String> findBookDocuments(@Param("bookIds") Collection<UUID> bookIds);
 }
@@ -1,5 +1,6 @@
 package net.library.repository;
 
+import jakarta.persistence.QueryHint;
 import net.library.model.entity.User;
 import net.library.repository.enums.ModerationState;
 import net.library.repository.enums.RoleType;
@@ -8,11 +9,29 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface UserRepository extends JpaRepository<User, UUID>, JpaSpecificationExecutor<User> {
+    int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * All users in the order of creation, read through a server-side cursor {@value #STREAM_FETCH_SIZE} rows at a time.
+     * The stream must be consumed and closed inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u ORDER BY u.createdAt, u.id")
+    Stream<User> streamAll();
 
     @Modifying
     @Query("DELETE FROM User u WHERE u.id = :userId")
@@ -29,4 +48,16 @@ public interface UserRepository extends JpaRepository<User, UUID>, JpaSpecificat
     @Modifying
     @Query("UPDATE User u SET u.roleType=:roleType WHERE u.id = :userId")
     int updateRoleType(@Param("userId") UUID userId, @Param("roleType") RoleType roleType);
-}
\ No newline at end of file
+
+    /**
+     * Sets the given states and role of the users, null values leave the column as it is.
+     */
+    @Modifying
+    @Query("""
+            UPDATE User u SET u.moderationState = COALESCE(:moderationState, u.moderationState),
+                              u.userState = COALESCE(:userState, u.userState),
+                              u.roleType = COALESCE(:roleType, u.roleType)
+            WHERE u.id IN :userIds""")
+    int updateAll(@Param("userIds") Collection<UUID> userIds, @Param("moderationState") ModerationState moderationState,
+                  @Param("userState") UserState userState, @Param("roleType") RoleType roleType);
+}
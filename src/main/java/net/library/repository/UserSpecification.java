@@ -17,32 +17,25 @@ public class UserSpecification {
             Predicate predicate = criteriaBuilder.conjunction();
 
             if (username != null && !username.isEmpty()) {
-
-                predicate = criteriaBuilder.and(predicate, criteriaBuilder.like(root.get("username"), "%" + username + "%"));
+                // served by the trigram index 'IDX_USERS_TRGM', wildcards of the filter are matched literally
+                var pattern = "%" + username.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+                predicate = criteriaBuilder.and(predicate, criteriaBuilder.like(root.get("username"), pattern, '\\'));
             }
 
             if (moderationState != null) {
+                // bound as native enums, a cast of the columns to text would rule out their indexes
                 predicate = criteriaBuilder.and(predicate,
-                        criteriaBuilder.equal(
-                                criteriaBuilder.function("text", String.class, root.get("moderationState")),
-                                moderationState.name()
-                        ));
+                        criteriaBuilder.equal(root.get("moderationState"), moderationState));
             }
 
             if (userState != null) {
                 predicate = criteriaBuilder.and(predicate,
-                        criteriaBuilder.equal(
-                                criteriaBuilder.function("text", String.class, root.get("userState")),
-                                userState.name()
-                        ));
+                        criteriaBuilder.equal(root.get("userState"), userState));
             }
 
             if (roleType != null) {
                 predicate = criteriaBuilder.and(predicate,
-                        criteriaBuilder.equal(
-                                criteriaBuilder.function("text", String.class, root.get("roleType")),
-                                roleType.name()
-                        ));
+                        criteriaBuilder.equal(root.get("roleType"), roleType));
             }
 
             if (startDate != null) {
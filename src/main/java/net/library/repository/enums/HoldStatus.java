@@ -0,0 +1,7 @@
+package net.library.repository.enums;
+
+public enum HoldStatus {
+    WAITING,
+    FULFILLED,
+    CANCELLED
+}
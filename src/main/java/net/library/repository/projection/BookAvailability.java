@@ -0,0 +1,10 @@
+package net.library.repository.projection;
+
+import java.util.UUID;
+
+public interface BookAvailability {
+
+    UUID getBookId();
+
+    long getAvailable();
+}
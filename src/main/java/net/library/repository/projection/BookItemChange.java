@@ -0,0 +1,12 @@
+package net.library.repository.projection;
+
+import java.util.UUID;
+
+public interface BookItemChange {
+
+    UUID getBookItemId();
+
+    UUID getBookId();
+
+    UUID getUserId();
+}
@@ -0,0 +1,12 @@
+package net.library.repository.projection;
+
+import java.util.UUID;
+
+public interface BookTitle {
+
+    UUID getId();
+
+    String getTitle();
+
+    String getAuthor();
+}
@@ -0,0 +1,112 @@
+package net.library.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.repository.BookItemRepository;
+import net.library.repository.enums.BookItemStatus;
+import net.library.repository.projection.BookAvailability;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory number of 'AVAILABLE' copies per book, used to reject borrowing of exhausted books
+ * without touching the database.
+ * <p>
+ * Counters live in a {@link ConcurrentHashMap}, so reads are lock-free and updates of different books
+ * do not contend. The index only answers "exhausted" when it is sure: books it knows nothing about always go
+ * to the database. Counters are moved by committed status changes and reconciled from 'BOOK_ITEMS'
+ * at startup and periodically; a reconciliation never overwrites a counter changed after its snapshot was taken.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookAvailabilityIndex {
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final BookItemRepository bookItemRepository;
+    private final ConcurrentHashMap<UUID, Counter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    @Value("${library.availability.enabled:true}")
+    private boolean enabled;
+
+    public boolean isExhausted(final UUID bookId) {
+        if (!enabled) {
+            return false;
+        }
+        var counter = counters.get(bookId);
+        return counter != null && counter.available() != UNKNOWN && counter.available() <= 0;
+    }
+
+    /**
+     * Returns the current logical time of the index, to be passed to {@link #markExhausted(UUID, long)}
+     * by a caller which is about to look for available copies in the database.
+     */
+    public long stamp() {
+        return clock.get();
+    }
+
+    /**
+     * Records that the database had no available copies of the book, unless the counter was changed
+     * after the given stamp (e.g. a copy was returned in the meantime). An allocation which skipped locked copies
+     * is no proof: the borrowers holding them may roll back, so the caller checks without skipping first.
+     */
+    public void markExhausted(final UUID bookId, final long stamp) {
+        counters.compute(bookId, (id, counter) -> counter != null && counter.touchedAt() > stamp
+                ? counter
+                : new Counter(0, clock.incrementAndGet()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(final BookItemStatusChangedEvent event) {
+        var available = event.status() == BookItemStatus.AVAILABLE;
+        if (available == event.previouslyAvailable()) {
+            return;
+        }
+        var delta = available ? 1 : -1;
+        counters.compute(event.bookId(), (id, counter) -> {
+            var touchedAt = clock.incrementAndGet();
+            if (counter == null || counter.available() == UNKNOWN) {
+                return new Counter(UNKNOWN, touchedAt);
+            }
+            return new Counter(Math.max(0, counter.available() + delta), touchedAt);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.availability.reconcile-interval:PT1M}",
+            initialDelayString = "${library.availability.reconcile-interval:PT1M}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        var stamp = clock.get();
+        var snapshot = bookItemRepository.countAvailableByBookId().stream()
+                .collect(Collectors.toMap(BookAvailability::getBookId, BookAvailability::getAvailable));
+
+        snapshot.forEach((bookId, available) -> counters.compute(bookId, (id, counter) ->
+                counter != null && counter.touchedAt() > stamp
+                        ? counter
+                        : new Counter((int) Math.min(available, Integer.MAX_VALUE), stamp)));
+        counters.entrySet().removeIf(entry -> !snapshot.containsKey(entry.getKey()) && entry.getValue().touchedAt() <= stamp);
+
+        log.debug("Availability index reconciled [books={}]", snapshot.size());
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    private record Counter(int available, long touchedAt) {
+    }
+}
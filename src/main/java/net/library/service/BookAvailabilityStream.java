@@ -0,0 +1,203 @@
+package net.library.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.library.exception.TooManySubscribersException;
+import net.library.exception.WrongState;
+import net.library.model.dto.BookItemStatusChangeDto;
+import net.library.model.event.BookItemStatusChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed status changes of book items (copies) to Server-Sent Events subscribers of their books.
+ * <p>
+ * Subscriptions are asynchronous requests ({@link SseEmitter}), so idle subscribers hold no thread.
+ * A single dispatcher thread fed through a bounded queue fans events out, the committing request thread
+ * only enqueues; when the queue is full the change is dropped and subscribers catch up on reconnect.
+ * The dispatcher never writes to a connection itself: every subscriber has its own queue of
+ * {@code library.sse.subscriber-queue-capacity} events, written by a virtual thread of its own while events are
+ * pending, so a subscriber whose writes block delays nobody else. A subscriber whose queue is full is too slow
+ * to follow and is dropped. A heartbeat comment detects closed connections, which are dropped on the first failed write.
+ */
+@Slf4j
+@Component
+public class BookAvailabilityStream {
+    private static final String STATUS_EVENT = "status";
+
+    private final ConcurrentHashMap<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService dispatcher;
+    private final Duration timeout;
+    private final int maxSubscribers;
+    private final int subscriberQueueCapacity;
+
+    public BookAvailabilityStream(@Value("${library.sse.timeout:PT30M}") final Duration timeout,
+                                  @Value("${library.sse.max-subscribers:10000}") final int maxSubscribers,
+                                  @Value("${library.sse.dispatch-queue-capacity:10000}") final int dispatchQueueCapacity,
+                                  @Value("${library.sse.subscriber-queue-capacity:100}") final int subscriberQueueCapacity) {
+        this.timeout = timeout;
+        this.maxSubscribers = maxSubscribers;
+        this.subscriberQueueCapacity = subscriberQueueCapacity;
+        this.dispatcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(dispatchQueueCapacity),
+                runnable -> Thread.ofPlatform().name("sse-dispatcher").daemon().unstarted(runnable));
+    }
+
+    public SseEmitter subscribe(final Collection<UUID> bookIds) {
+        return subscribe(bookIds, new SseEmitter(timeout.toMillis()));
+    }
+
+    SseEmitter subscribe(final Collection<UUID> bookIds, final SseEmitter emitter) {
+        // checked before counting, a subscription to no book would never be removed
+        if (bookIds == null || bookIds.isEmpty() || bookIds.stream().anyMatch(Objects::isNull)) {
+            throw new WrongState("Subscription requires at least one book id and no empty ids");
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManySubscribersException("Subscriber limit reached: " + maxSubscribers);
+        }
+        var subscriber = new Subscriber(emitter, Set.copyOf(bookIds), new ArrayBlockingQueue<>(subscriberQueueCapacity));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        subscriber.books().forEach(bookId -> subscribers.compute(bookId, (id, current) -> {
+            var updated = current == null ? ConcurrentHashMap.<Subscriber>newKeySet() : current;
+            updated.add(subscriber);
+            return updated;
+        }));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(final BookItemStatusChangedEvent event) {
+        var bookSubscribers = subscribers.get(event.bookId());
+        if (bookSubscribers == null || bookSubscribers.isEmpty()) {
+            return;
+        }
+        var change = new BookItemStatusChangeDto(event.bookId(), event.bookItemId(), event.status(), event.action(),
+                event.changedAt());
+        dispatch(() -> List.copyOf(bookSubscribers).forEach(subscriber ->
+                offer(subscriber, SseEmitter.event().name(STATUS_EVENT).id(event.bookItemId().toString()).data(change))));
+    }
+
+    @Scheduled(fixedDelayString = "${library.sse.heartbeat-interval:PT15S}")
+    public void heartbeat() {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        dispatch(() -> subscribers.values().stream()
+                .flatMap(Set::stream)
+                .distinct()
+                .toList()
+                .forEach(subscriber -> offer(subscriber, SseEmitter.event().comment("heartbeat"))));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(bookSubscribers -> bookSubscribers.forEach(subscriber -> subscriber.emitter().complete()));
+        subscribers.clear();
+    }
+
+    private void dispatch(final Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("SSE dispatch queue is full, change dropped");
+        }
+    }
+
+    /**
+     * Queues the event for the subscriber without blocking, starts its writer unless it is already running.
+     */
+    private void offer(final Subscriber subscriber, final SseEmitter.SseEventBuilder event) {
+        if (!subscriber.pending().offer(event)) {
+            if (unsubscribe(subscriber)) {
+                log.warn("SSE subscriber is too slow, dropped [books={}]", subscriber.books().size());
+                // completing waits for the write in progress, which may not return soon
+                Thread.ofVirtual().start(() -> subscriber.emitter().completeWithError(
+                        new IOException("Subscriber is too slow, " + subscriberQueueCapacity + " events pending")));
+            }
+            return;
+        }
+        if (subscriber.writing().compareAndSet(false, true)) {
+            Thread.ofVirtual().name("sse-writer").start(() -> write(subscriber));
+        }
+    }
+
+    private void write(final Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.pending().poll()) != null) {
+                if (!send(subscriber.emitter(), event)) {
+                    subscriber.pending().clear();
+                    break;
+                }
+            }
+            subscriber.writing().set(false);
+            // an event offered after the last poll and before the flag was reset has no writer yet
+        } while (!subscriber.pending().isEmpty() && subscriber.writing().compareAndSet(false, true));
+    }
+
+    private boolean send(final SseEmitter emitter, final SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the subscriber from all its books, returns false when it was already removed.
+     */
+    private boolean unsubscribe(final Subscriber subscriber) {
+        var removed = subscriber.books().stream()
+                .map(bookId -> remove(bookId, subscriber))
+                .reduce(false, Boolean::logicalOr);
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+        return removed;
+    }
+
+    private boolean remove(final UUID bookId, final Subscriber subscriber) {
+        var removed = new boolean[1];
+        subscribers.computeIfPresent(bookId, (id, bookSubscribers) -> {
+            removed[0] = bookSubscribers.remove(subscriber);
+            return bookSubscribers.isEmpty() ? null : bookSubscribers;
+        });
+        return removed[0];
+    }
+
+    private record Subscriber(SseEmitter emitter, Set<UUID> books, BlockingQueue<SseEmitter.SseEventBuilder> pending,
+                              AtomicBoolean writing) {
+
+        Subscriber(final SseEmitter emitter, final Set<UUID> books, final BlockingQueue<SseEmitter.SseEventBuilder> pending) {
+            this(emitter, books, pending, new AtomicBoolean());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.library.model.response.BookResponse;
+import net.library.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * JSON read model of books, enabled with {@code library.books.read-model=json}.
+ * <p>
+ * Postgres assembles each book with its copies (and borrowers) and genres into one JSON document
+ * (see {@link BookRepository#findBookDocuments}), which is read straight into {@link BookResponse}.
+ * Nothing is loaded into the persistence context, so a book costs one row and one parse instead of
+ * managed 'Book', 'BookItem', 'User' and 'BookGenre' entities copied field by field.
+ * With {@code library.books.read-model=entity} (default) {@link BookService} maps entities as before.
+ */
+@Component
+public class BookDocumentReader {
+    private final BookRepository bookRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    public BookDocumentReader(final BookRepository bookRepository,
+                              final ObjectMapper objectMapper,
+                              @Value("${library.books.read-model:entity}") final String readModel) {
+        this.bookRepository = bookRepository;
+        this.objectMapper = objectMapper;
+        this.enabled = "json".equalsIgnoreCase(readModel);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Books in the order of the given ids, unknown ids are skipped.
+     */
+    public List<BookResponse> findByIds(final Collection<UUID> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        var booksById = bookRepository.findBookDocuments(bookIds).stream()
+                .map(this::read)
+                .collect(Collectors.toMap(BookResponse::getId, Function.identity()));
+
+        return bookIds.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private BookResponse read(final String document) {
+        try {
+            return objectMapper.readValue(document, BookResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Book document is not readable", e);
+        }
+    }
+}
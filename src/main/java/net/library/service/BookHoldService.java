@@ -0,0 +1,92 @@
+package net.library.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.library.exception.NotFoundException;
+import net.library.model.dto.BookHoldDto;
+import net.library.model.entity.BookHold;
+import net.library.repository.BookHoldRepository;
+import net.library.repository.enums.HoldStatus;
+import net.library.util.Utils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookHoldService {
+    private final BookService bookService;
+    private final BookHoldRepository bookHoldRepository;
+
+    /**
+     * Borrows any available copy of the book for the user, see {@link BookService#borrowActionForAnyBookItem}.
+     * When no copy is available, the user is put on the waitlist of the book instead of failing,
+     * the copy is handed over by {@link BookService#returnActionForBookItem} once returned.
+     * Holds with higher 'priority' are served first, equal priorities in order of creation.
+     * The returned hold is 'FULFILLED' with the borrowed copy or 'WAITING' with its position in the waitlist.
+     */
+    public BookHoldDto placeHold(final UUID bookId, final UUID userId, final int priority) {
+        var currentTime = Utils.currentDate();
+        var hold = new BookHold()
+                .setBookId(bookId)
+                .setUserId(userId)
+                .setPriority(priority)
+                .setCreatedAt(currentTime);
+        try {
+            var borrowed = bookService.borrowActionForAnyBookItem(bookId, userId);
+            return toDto(bookHoldRepository.save(hold
+                    .setStatus(HoldStatus.FULFILLED)
+                    .setBookItemId(borrowed.getBookItemId())
+                    .setFulfilledAt(currentTime)));
+        } catch (NotFoundException e) {
+            var holdId = bookHoldRepository.save(hold.setStatus(HoldStatus.WAITING)).getId();
+            // a copy returned between the refused borrow and the enqueue has not seen this hold
+            bookService.fulfillWaitingHolds(bookId);
+            return getHold(holdId);
+        }
+    }
+
+    public BookHoldDto getHold(final UUID holdId) {
+        return bookHoldRepository.findById(holdId)
+                .map(this::toDto)
+                .orElseThrow(() -> new NotFoundException("Hold not found with id: " + holdId));
+    }
+
+    @Transactional
+    public void cancelHold(final UUID holdId) {
+        if (bookHoldRepository.cancelWaiting(holdId) == 0) {
+            throw new NotFoundException("Waiting hold not found with id: " + holdId);
+        }
+    }
+
+    /**
+     * Safety net for copies which became available without reaching the waitlist,
+     * e.g. returned concurrently with placing a hold.
+     */
+    @Scheduled(fixedDelayString = "${library.holds.sweep-interval:PT30S}",
+            initialDelayString = "${library.holds.sweep-interval:PT30S}")
+    public void sweepWaitingHolds() {
+        for (var bookId : bookHoldRepository.findBookIdsWithWaitingHolds()) {
+            try {
+                var fulfilled = bookService.fulfillWaitingHolds(bookId);
+                if (fulfilled > 0) {
+                    log.info("Waiting holds fulfilled [bookId={}, count={}]", bookId, fulfilled);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to fulfill waiting holds [bookId={}]", bookId, e);
+            }
+        }
+    }
+
+    private BookHoldDto toDto(final BookHold hold) {
+        var position = hold.getStatus() == HoldStatus.WAITING
+                ? Math.toIntExact(bookHoldRepository.findPosition(hold.getBookId(), hold.getId(), hold.getPriority(), hold.getCreatedAt()))
+                : null;
+
+        return new BookHoldDto(hold.getId(), hold.getBookId(), hold.getUserId(), hold.getBookItemId(),
+                hold.getStatus(), position, hold.getFulfilledAt());
+    }
+}
@@ -0,0 +1,169 @@
+package net.library.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.library.util.Utils;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly partitions of 'BOOK_ITEM_HISTORY' (partitioned by 'ACTION_AT').
+ * <p>
+ * Partitions for the current month and {@code library.history.partitions.months-ahead} following months are
+ * created at startup and periodically. Rows which already landed in the default partition for a new month are
+ * moved into it. With {@code retention-months} set, partitions older than the retention are detached, archived
+ * to {@code archive-dir} as gzipped CSV (COPY TO STDOUT) and dropped; a partition left detached by an interrupted
+ * run is archived on the next one.
+ */
+@Slf4j
+@Component
+public class BookItemHistoryPartitionManager {
+    private static final String DEFAULT_PARTITION = "book_item_history_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("^book_item_history_(\\d{4})_(\\d{2})$");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+
+    public BookItemHistoryPartitionManager(final JdbcTemplate jdbcTemplate,
+                                           final PlatformTransactionManager transactionManager,
+                                           @Value("${library.history.partitions.months-ahead:3}") final int monthsAhead,
+                                           @Value("${library.history.partitions.retention-months:0}") final int retentionMonths,
+                                           @Value("${library.history.partitions.archive-dir:archive/book_item_history}") final Path archiveDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.history.partitions.maintenance-interval:PT12H}",
+            initialDelayString = "${library.history.partitions.maintenance-interval:PT12H}")
+    public void maintain() {
+        var currentMonth = YearMonth.from(Utils.currentDate());
+        for (int i = 0; i <= monthsAhead; i++) {
+            var month = currentMonth.plusMonths(i);
+            try {
+                createPartition(month);
+            } catch (RuntimeException e) {
+                log.error("Failed to create history partition [month={}]", month, e);
+            }
+        }
+        if (retentionMonths > 0) {
+            archivePartitionsBefore(currentMonth.minusMonths(retentionMonths));
+        }
+    }
+
+    private void createPartition(final YearMonth month) {
+        var name = partitionName(month);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name))) {
+            return;
+        }
+        var from = month.atDay(1).atStartOfDay();
+        var to = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            var misplaced = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE action_at >= ? AND action_at < ?)",
+                    Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+            if (misplaced) {
+                jdbcTemplate.execute("ALTER TABLE book_item_history DETACH PARTITION " + DEFAULT_PARTITION);
+            }
+            jdbcTemplate.execute("CREATE TABLE %s PARTITION OF book_item_history FOR VALUES FROM ('%s') TO ('%s')"
+                    .formatted(name, month.atDay(1), month.plusMonths(1).atDay(1)));
+            if (misplaced) {
+                var moved = jdbcTemplate.update("""
+                        WITH moved AS (DELETE FROM %s WHERE action_at >= ? AND action_at < ? RETURNING *)
+                        INSERT INTO book_item_history SELECT * FROM moved
+                        """.formatted(DEFAULT_PARTITION), Timestamp.valueOf(from), Timestamp.valueOf(to));
+                jdbcTemplate.execute("ALTER TABLE book_item_history ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+                log.info("Rows moved from default history partition [partition={}, rows={}]", name, moved);
+            }
+        });
+        log.info("History partition created [name={}]", name);
+    }
+
+    private void archivePartitionsBefore(final YearMonth oldestKept) {
+        var partitions = jdbcTemplate.query("""
+                        SELECT relname, relispartition
+                        FROM pg_class
+                        WHERE relkind = 'r'
+                          AND relname ~ ?
+                          AND pg_table_is_visible(oid)
+                        ORDER BY relname
+                        """,
+                (rs, rowNum) -> new Partition(rs.getString("relname"), rs.getBoolean("relispartition")),
+                PARTITION_NAME.pattern());
+
+        for (var partition : partitions) {
+            var matcher = PARTITION_NAME.matcher(partition.name());
+            if (!matcher.matches()) {
+                continue;
+            }
+            var month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try {
+                archive(partition);
+            } catch (RuntimeException e) {
+                log.error("Failed to archive history partition [name={}]", partition.name(), e);
+            }
+        }
+    }
+
+    private void archive(final Partition partition) {
+        var name = partition.name();
+        if (partition.attached()) {
+            jdbcTemplate.execute("ALTER TABLE book_item_history DETACH PARTITION " + name);
+        }
+
+        var file = archiveDir.resolve(name + ".csv.gz");
+        var tmpFile = archiveDir.resolve(name + ".csv.gz.tmp");
+        try {
+            Files.createDirectories(archiveDir);
+            var rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try (var out = new GZIPOutputStream(Files.newOutputStream(tmpFile))) {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyOut("COPY " + name + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            jdbcTemplate.execute("DROP TABLE " + name);
+            log.info("History partition archived [name={}, rows={}, file={}]", name, rows, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String partitionName(final YearMonth month) {
+        return "book_item_history_" + month.format(PARTITION_SUFFIX);
+    }
+
+    private record Partition(String name, boolean attached) {
+    }
+}
@@ -0,0 +1,100 @@
+package net.library.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.repository.enums.BookAction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Application-side writer of 'BOOK_ITEM_HISTORY', enabled with {@code library.history.mode=application}.
+ * <p>
+ * The mode is set for every connection of the pool as the 'library.history_mode' setting (see
+ * {@code spring.datasource.hikari.connection-init-sql}), which the 'WHEN' condition of the
+ * 'BOOK_ITEM_HISTORY_TRIGGER_UPDATE' trigger reads: in application mode borrowing and returning run no trigger and
+ * insert no history row inside the user's transaction. Instead, committed status changes are buffered in a bounded
+ * buffer of {@code library.history.buffer-capacity} and written with JDBC batch inserts of
+ * {@code library.history.batch-size}. When the buffer is full the change is written by the caller.
+ * 'ADDED' rows are still written by the insert trigger.
+ * <p>
+ * Rows still buffered when the process dies, or of a batch which fails to insert, are lost: the mode trades
+ * the completeness of the history for a shorter borrowing transaction. The trigger itself is never disabled,
+ * sessions of other instances or tools keep their own mode.
+ */
+@Slf4j
+@Component
+public class BookItemHistoryWriter {
+    private static final String INSERT_SQL = """
+            INSERT INTO book_item_history (item_id, user_id, action_at, action_type)
+            VALUES (?, ?, ?, CAST(? AS book_action_types))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final BlockingQueue<BookItemStatusChangedEvent> buffer;
+
+    public BookItemHistoryWriter(final JdbcTemplate jdbcTemplate,
+                                 final PlatformTransactionManager transactionManager,
+                                 @Value("${library.history.mode:trigger}") final String mode,
+                                 @Value("${library.history.buffer-capacity:10000}") final int bufferCapacity,
+                                 @Value("${library.history.batch-size:500}") final int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = "application".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(final BookItemStatusChangedEvent event) {
+        if (!enabled || event.action() == BookAction.ADDED) {
+            return;
+        }
+        if (!buffer.offer(event)) {
+            write(List.of(event));
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${library.history.flush-interval:PT0.2S}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        var batch = new ArrayList<BookItemStatusChangedEvent>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(final List<BookItemStatusChangedEvent> events) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(),
+                    (ps, event) -> {
+                        ps.setObject(1, event.bookItemId());
+                        ps.setObject(2, event.userId());
+                        ps.setTimestamp(3, Timestamp.valueOf(event.changedAt()));
+                        ps.setString(4, event.action().name());
+                    }));
+        } catch (RuntimeException e) {
+            log.error("Failed to write book item history, the rows are lost [size={}]", events.size(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.model.response.BookResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of {@link BookResponse} in front of {@link BookService#getById}, bounded by
+ * {@code library.books.cache.maximum-size} and {@code ttl}. Every entry keeps the ETag computed when it was loaded,
+ * so a hit answers a conditional GET without a query.
+ * <p>
+ * A book is evicted once a status change of one of its copies (add, borrow, return, hold hand-over) is committed,
+ * and when the book or one of its copies is deleted. A load racing with a commit cannot leave a stale entry:
+ * the eviction waits for the running load of the same book and removes its result.
+ * Hits, misses, evictions and load time are published as 'cache.*' metrics with the tag cache=books.
+ */
+@Component
+public class BookResponseCache {
+    private final Cache<UUID, TaggedBook> cache;
+    private final boolean enabled;
+
+    public BookResponseCache(final MeterRegistry meterRegistry,
+                             @Value("${library.books.cache.enabled:true}") final boolean enabled,
+                             @Value("${library.books.cache.maximum-size:10000}") final long maximumSize,
+                             @Value("${library.books.cache.ttl:PT10M}") final Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "books");
+    }
+
+    public TaggedBook get(final UUID bookId, final Function<UUID, TaggedBook> loader) {
+        return enabled ? cache.get(bookId, loader) : loader.apply(bookId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStatusChanged(final BookItemStatusChangedEvent event) {
+        evict(event.bookId());
+    }
+
+    public void evict(final UUID bookId) {
+        cache.invalidate(bookId);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Book with the ETag of {@code GET /books/{id}}, computed before the book was read: a change committed
+     * in between evicts the entry.
+     */
+    public record TaggedBook(BookResponse book, String eTag) {
+    }
+}
@@ -0,0 +1,99 @@
+package net.library.service;
+
+import net.library.model.request.CountMode;
+import net.library.model.request.SearchMode;
+import net.library.model.response.CountedPage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-text search of books over the generated 'BOOKS.SEARCH_VECTOR' column (title, author and description),
+ * served by the 'IDX_BOOKS_SEARCH_VECTOR' GIN index. Postgres keeps the column up to date on insert and update.
+ * <p>
+ * Results are ordered by {@code ts_rank_cd}, title matches weigh more than author matches, which weigh more than
+ * description matches. Genre and availability filters are only added to the query when requested.
+ */
+@Component
+public class BookSearch {
+    private static final String CONFIG = "english";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PageQueryExecutor pageQueryExecutor;
+
+    public BookSearch(final NamedParameterJdbcTemplate jdbcTemplate, final PageQueryExecutor pageQueryExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageQueryExecutor = pageQueryExecutor;
+    }
+
+    /**
+     * Ids of the matching books in the order of relevance.
+     *
+     * @param genre     name of a genre the books must have (case-insensitive), null for any
+     * @param available true for books with an 'AVAILABLE' copy, false for books without one, null for any
+     */
+    public CountedPage<UUID> findIds(final String query, final SearchMode mode, final String genre, final Boolean available,
+                                     final Pageable pageable, final CountMode countMode) {
+        var text = mode == SearchMode.PREFIX ? prefixQuery(query) : query;
+        if (text == null || text.isBlank()) {
+            return new CountedPage<>(List.of(), countMode == CountMode.NONE ? null : 0L);
+        }
+        var params = new MapSqlParameterSource()
+                .addValue("query", text)
+                .addValue("genre", genre)
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+
+        var from = "FROM books b, " + tsQuery(mode) + " query " + where(genre, available);
+        var ids = jdbcTemplate.queryForList("""
+                SELECT b.id
+                %s
+                ORDER BY ts_rank_cd(b.search_vector, query) DESC, b.id
+                LIMIT :limit OFFSET :offset
+                """.formatted(from), params, UUID.class);
+
+        var total = pageQueryExecutor.total(countMode, "books", List.of(mode, query, String.valueOf(genre), String.valueOf(available)),
+                () -> jdbcTemplate.queryForObject("SELECT COUNT(*) " + from, params, Long.class));
+        return new CountedPage<>(ids, total);
+    }
+
+    private static String tsQuery(final SearchMode mode) {
+        return switch (mode) {
+            case WORDS -> "websearch_to_tsquery('" + CONFIG + "', :query)";
+            case PREFIX -> "to_tsquery('" + CONFIG + "', :query)";
+            case PHRASE -> "phraseto_tsquery('" + CONFIG + "', :query)";
+        };
+    }
+
+    private static String where(final String genre, final Boolean available) {
+        var where = new StringBuilder("WHERE b.search_vector @@ query");
+        if (genre != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM book_genres bg JOIN genres g ON g.id = bg.genre_id")
+                    .append(" WHERE bg.book_id = b.id AND lower(g.name) = lower(:genre))");
+        }
+        if (available != null) {
+            where.append(available ? " AND EXISTS" : " AND NOT EXISTS")
+                    .append(" (SELECT 1 FROM book_items bi WHERE bi.book_id = b.id AND bi.status = 'AVAILABLE')");
+        }
+        return where.toString();
+    }
+
+    /**
+     * 'to_tsquery' syntax matching all words, the last one as a prefix. Words are reduced to letters and digits,
+     * so the input can not inject tsquery operators.
+     */
+    private static String prefixQuery(final String query) {
+        if (query == null) {
+            return null;
+        }
+        var words = Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .toList();
+        return words.isEmpty() ? null : String.join(" & ", words) + ":*";
+    }
+}
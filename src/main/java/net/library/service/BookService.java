@@ -6,20 +6,37 @@ import lombok.extern.slf4j.Slf4j;
 import net.library.converter.Converter;
 import net.library.exception.NotFoundException;
 import net.library.model.dto.BookGenreDto;
+import net.library.model.dto.BookItemBatchResultDto;
 import net.library.model.dto.BookItemDto;
+import net.library.model.dto.BookItemHistoryDto;
 import net.library.model.dto.BookItemIdDto;
 import net.library.model.dto.UserDto;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.model.entity.Book;
+import net.library.model.entity.BookGenre;
+import net.library.model.entity.BookItem;
+import net.library.model.mapper.BookItemHistoryMapper;
 import net.library.model.mapper.BookItemMapper;
 import net.library.model.mapper.BookMapper;
+import net.library.model.request.BookItemBatchEntry;
 import net.library.model.request.BookItemRequest;
 import net.library.model.request.BookRequest;
+import net.library.model.request.CountMode;
+import net.library.model.request.SearchMode;
 import net.library.model.response.AddBookResponse;
 import net.library.model.response.BookResponse;
+import net.library.model.response.CountedPage;
+import net.library.model.response.KeysetPage;
 import net.library.repository.*;
+import net.library.repository.enums.BookAction;
 import net.library.repository.enums.BookItemStatus;
+import net.library.repository.projection.BookItemChange;
+import net.library.util.KeysetCursor;
 import net.library.util.Utils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
@@ -27,9 +44,15 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,7 +65,27 @@ public class BookService {
     private final BookItemRepository bookItemRepository;
     private final BookGenresRepository bookGenresRepository;
     private final BookItemHistoryRepository bookItemHistoryRepository;
+    private final BookHoldRepository bookHoldRepository;
     private final Converter converter;
+    private final BookAvailabilityIndex availabilityIndex;
+    private final BorrowGroupCommitter groupCommitter;
+    private final BookDocumentReader documentReader;
+    private final PageQueryExecutor pageQueryExecutor;
+    private final BookSearch bookSearch;
+    private final BookTypeahead typeahead;
+    private final BookResponseCache responseCache;
+    private final CatalogETags eTags;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BookItemDto addBookItem(final BookItemRequest bookItem) {
+        var bookItemConverted = converter.bookItemConverter(bookItem);
+        var savedBookItem = bookItemRepository.save(bookItemConverted);
+
+        eventPublisher.publishEvent(new BookItemStatusChangedEvent(savedBookItem.getBookId(), savedBookItem.getId(),
+                null, BookItemStatus.AVAILABLE, false, BookAction.ADDED, Utils.currentDate()));
+
+        return BookItemMapper.toDto(savedBookItem);
+    }
 
     /**
      * This method updates a random book item (in status of 'AVAILABLE') to mark it as borrowed by setting
@@ -53,27 +96,40 @@ public class BookService {
      * The method returns the updated entity from 'BOOK_ITEMS'.
      * If no available book item is found (i.e., no records match the 'AVAILABLE' status),
      * a 'NOT FOUND' error is thrown.
+     * The allocation is a single statement running in its own READ COMMITTED transaction
+     * (see {@link BookItemRepository#selectAvailableBookItemIdAndUpdate}), concurrent borrowers of the same
+     * book skip each other's locked copies instead of waiting for them.
+     * Books known by {@link BookAvailabilityIndex} to have no available copies are rejected
+     * without a database round trip. A book is only marked as exhausted when no copy is 'AVAILABLE' at all
+     * (see {@link BookItemRepository#existsAvailableByBookId}), not when all of them were skipped as locked.
+     * With {@link BorrowGroupCommitter} enabled, concurrent requests share one allocation transaction.
      */
-    public BookItemDto addBookItem(final BookItemRequest bookItem) {
-        var bookItemConverted = converter.bookItemConverter(bookItem);
-        var savedBookItem = bookItemRepository.save(bookItemConverted);
-
-        return BookItemMapper.toDto(savedBookItem);
-    }
-
-    @Transactional
     public BookItemIdDto borrowActionForAnyBookItem(final UUID bookId, final UUID userId) {
+        if (availabilityIndex.isExhausted(bookId)) {
+            throw new NotFoundException("No available book items for book " + bookId);
+        }
+
+        var stamp = availabilityIndex.stamp();
         var currentTime = Utils.currentDate();
         var dueDate = Utils.currentDate().plusWeeks(DUE_DATE).toLocalDate();
 
-        var bookItemIdList = bookItemRepository.selectAvailableBookItemIdAndUpdate(bookId, userId, currentTime, dueDate);
+        var bookItemIdList = groupCommitter.isEnabled()
+                ? groupCommitter.borrow(bookId, userId, currentTime, dueDate)
+                : bookItemRepository.selectAvailableBookItemIdAndUpdate(bookId, userId, currentTime, dueDate);
 
         if (bookItemIdList.isEmpty()) {
+            // copies skipped as locked may still be released by a rollback, only a plain check proves exhaustion
+            if (!bookItemRepository.existsAvailableByBookId(bookId)) {
+                availabilityIndex.markExhausted(bookId, stamp);
+            }
             throw new NotFoundException("User" + userId + " not found");
         }
 
         var bookItemId = bookItemIdList.getFirst();
 
+        eventPublisher.publishEvent(new BookItemStatusChangedEvent(bookId, bookItemId, userId,
+                BookItemStatus.IN_PROGRESS, true, BookAction.BORROWED, currentTime));
+
         return new BookItemIdDto(bookItemId);
     }
 
@@ -92,11 +148,14 @@ public class BookService {
         var currentTime = Utils.currentDate();
         var dueDate = Utils.currentDate().plusDays(DUE_DATE).toLocalDate();
 
-        var result = bookItemRepository.borrowAction(bookItemId, userId, bookItemStatus, currentTime, dueDate, BookItemStatus.AVAILABLE);
+        var bookIds = bookItemRepository.borrowAction(bookItemId, userId, bookItemStatus.name(), currentTime, dueDate);
 
-        if (result == 0) {
+        if (bookIds.isEmpty()) {
             throw new NotFoundException("User" + userId + " not found");
         }
+
+        eventPublisher.publishEvent(new BookItemStatusChangedEvent(bookIds.getFirst(), bookItemId, userId,
+                bookItemStatus, true, BookAction.BORROWED, currentTime));
     }
 
     @Lock(LockModeType.OPTIMISTIC)
@@ -110,8 +169,9 @@ public class BookService {
                 transactionId, newTransaction, bookItemId);
 
         var currentTime = Utils.currentDate();
-        var bookItem = bookItemRepository.findByIdAndUserId_Id(bookItemId, userId).orElseThrow(
-                () -> new NotFoundException("Book item not found with id: " + bookItemId));
+        var bookItem = bookItemRepository.findByIdAndUserId_Id(bookItemId, userId)
+                .filter(item -> item.getStatus() != BookItemStatus.AVAILABLE)
+                .orElseThrow(() -> new NotFoundException("Book item not found with id: " + bookItemId));
 
         bookItem.setStatus(BookItemStatus.AVAILABLE);
         bookItem.setReturnedAt(currentTime);
@@ -119,7 +179,10 @@ public class BookService {
         bookItem.setDueDate(null);
 
         log.info("Saving book item in transaction [id={}, isNew={}]", transactionId, newTransaction);
-        bookItemRepository.save(bookItem);
+        bookItemRepository.saveAndFlush(bookItem);
+        eventPublisher.publishEvent(new BookItemStatusChangedEvent(bookItem.getBookId(), bookItemId, userId,
+                BookItemStatus.AVAILABLE, false, BookAction.RETURNED, currentTime));
+        handOffToWaitingHold(bookItem.getBookId(), currentTime);
 
         log.info("Transaction completed [id={}]", transactionId);
     }
@@ -134,122 +197,270 @@ public class BookService {
      * 'userId', 'bookId', 'bookItemId', and the corresponding action status.
      * If no available book item or user is found,
      * a 'NOT FOUND' error is thrown.
+     * When users are waiting for the book, the copy goes to the head of the waitlist in the same transaction.
      */
-    @Transactional
+    @Transactional(isolation = Isolation.READ_COMMITTED)
     public void returnActionForBookItem(final UUID bookItemId, final UUID userId) {
         var currentTime = Utils.currentDate();
-        var result = bookItemRepository.returnAction(bookItemId, userId, currentTime);
+        var bookIds = bookItemRepository.returnAction(bookItemId, userId, currentTime);
 
-        if (result == 0) {
+        if (bookIds.isEmpty()) {
             throw new NotFoundException("User" + userId + " not found");
         }
+
+        eventPublisher.publishEvent(new BookItemStatusChangedEvent(bookIds.getFirst(), bookItemId, userId,
+                BookItemStatus.AVAILABLE, false, BookAction.RETURNED, currentTime));
+        handOffToWaitingHold(bookIds.getFirst(), currentTime);
+    }
+
+    /**
+     * Hands available copies of the book to waiting holds, one copy per hold in waitlist order,
+     * returns the number of fulfilled holds.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public int fulfillWaitingHolds(final UUID bookId) {
+        var currentTime = Utils.currentDate();
+        var fulfilled = 0;
+        while (handOffToWaitingHold(bookId, currentTime)) {
+            fulfilled++;
+        }
+        return fulfilled;
+    }
+
+    private boolean handOffToWaitingHold(final UUID bookId, final LocalDateTime currentTime) {
+        var dueDate = currentTime.plusDays(DUE_DATE).toLocalDate();
+        var changes = bookHoldRepository.assignNextHold(bookId, currentTime, dueDate);
+
+        changes.forEach(change -> eventPublisher.publishEvent(new BookItemStatusChangedEvent(change.getBookId(),
+                change.getBookItemId(), change.getUserId(), BookItemStatus.IN_PROGRESS, true, BookAction.BORROWED, currentTime)));
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Borrows a batch of book items (copies) with a single statement and a single commit,
+     * every pair of 'bookItemId' and 'userId' is reported as succeeded or failed.
+     * A copy fails when it is not found, not in 'AVAILABLE' status, the user is not found
+     * or the copy is already requested earlier in the same batch.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<BookItemBatchResultDto> borrowBookItems(final List<BookItemBatchEntry> items) {
+        var currentTime = Utils.currentDate();
+        var dueDate = Utils.currentDate().plusDays(DUE_DATE).toLocalDate();
+
+        var changes = bookItemRepository.borrowBatch(bookItemIds(items), userIds(items), currentTime, dueDate);
+        changes.forEach(change -> eventPublisher.publishEvent(new BookItemStatusChangedEvent(change.getBookId(),
+                change.getBookItemId(), change.getUserId(), BookItemStatus.IN_PROGRESS, true, BookAction.BORROWED, currentTime)));
+
+        return toBatchResult(items, changes);
+    }
+
+    /**
+     * Returns a batch of book items (copies) with a single statement and a single commit,
+     * every pair of 'bookItemId' and 'userId' is reported as succeeded or failed.
+     * A copy fails when it is not found or is not borrowed by the user.
+     * Returned copies go to waiting holds of their books in the same transaction.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<BookItemBatchResultDto> returnBookItems(final List<BookItemBatchEntry> items) {
+        var currentTime = Utils.currentDate();
+
+        var changes = bookItemRepository.returnBatch(bookItemIds(items), userIds(items), currentTime);
+        changes.forEach(change -> eventPublisher.publishEvent(new BookItemStatusChangedEvent(change.getBookId(),
+                change.getBookItemId(), change.getUserId(), BookItemStatus.AVAILABLE, false, BookAction.RETURNED, currentTime)));
+        changes.forEach(change -> handOffToWaitingHold(change.getBookId(), currentTime));
+
+        return toBatchResult(items, changes);
+    }
+
+    private static UUID[] bookItemIds(final List<BookItemBatchEntry> items) {
+        return items.stream().map(BookItemBatchEntry::getBookItemId).toArray(UUID[]::new);
+    }
+
+    private static UUID[] userIds(final List<BookItemBatchEntry> items) {
+        return items.stream().map(BookItemBatchEntry::getUserId).toArray(UUID[]::new);
+    }
+
+    private static List<BookItemBatchResultDto> toBatchResult(final List<BookItemBatchEntry> items, final List<BookItemChange> changes) {
+        var changed = changes.stream()
+                .map(change -> new BookItemBatchEntry(change.getBookItemId(), change.getUserId()))
+                .collect(Collectors.toCollection(HashSet::new));
+
+        return items.stream()
+                .map(item -> new BookItemBatchResultDto(item.getBookItemId(), item.getUserId(), changed.remove(item)))
+                .toList();
     }
 
     public AddBookResponse addBook(final BookRequest bookRequest) {
-        var newBook = converter.bookConverter(bookRequest);
-        return BookMapper.toDto(bookRepository.save(newBook));
+        var newBook = bookRepository.save(converter.bookConverter(bookRequest));
+        typeahead.add(newBook.getId(), newBook.getTitle(), newBook.getAuthor());
+        return BookMapper.toDto(newBook);
     }
 
-    public BookResponse getById(UUID bookId) {
+    /**
+     * Served through {@link BookResponseCache}, which is evicted by status changes of the book's copies.
+     * The ETag is computed only when the book is loaded.
+     */
+    public BookResponseCache.TaggedBook getById(UUID bookId) {
+        return responseCache.get(bookId, id -> {
+            var eTag = eTags.forBook(id);
+            if (eTag == null) {
+                throw new NotFoundException("Book not found with id: " + id);
+            }
+            return new BookResponseCache.TaggedBook(loadById(id), eTag);
+        });
+    }
+
+    private BookResponse loadById(UUID bookId) {
+        if (documentReader.isEnabled()) {
+            return documentReader.findByIds(List.of(bookId)).stream().findFirst()
+                    .orElseThrow(() -> new NotFoundException("Book not found with id: " + bookId));
+        }
+
         var book = bookRepository.findById(bookId)
               .orElseThrow(() -> new NotFoundException("Book not found with id: " + bookId));
 
-        return BookResponse.builder()
-                .id(book.getId())
-                .title(book.getTitle())
-                .author(book.getAuthor())
-                .description(book.getDescription())
-                .edition(book.getEdition())
-                .publicationYear(book.getPublicationYear())
-                .updatedAt(book.getUpdatedAt())
-                .createdAt(book.getCreatedAt())
-                .deletedAt(book.getDeletedAt())
-                .bookItems(Optional.ofNullable(book.getBookItemList()).orElse(Collections.emptyList()).stream().map(
-                        bookItem -> new BookItemDto(
-                                bookItem.getId(),
-                                Optional.ofNullable(bookItem.getUserId()).map(user -> new UserDto(
-                                        bookItem.getUserId().getId(),
-                                        bookItem.getUserId().getUsername(),
-                                        bookItem.getUserId().getName(),
-                                        bookItem.getUserId().getSurname(),
-                                        bookItem.getUserId().getEmail(),
-                                        bookItem.getUserId().getPhoneNumber(),
-                                        bookItem.getUserId().getAddress()
-                                )).orElse(null),
-                                bookItem.getStatus(),
-                                bookItem.getBorrowedAt(),
-                                bookItem.getReturnedAt()
-                        )).collect(Collectors.toList()))
-                .genres(Optional.ofNullable(book.getBookGenres()).orElse(Collections.emptyList()).stream().map(
-                        genre -> new BookGenreDto(
-                                genre.getGenre().getName()
-                        )).collect(Collectors.toList()))
-                .build();
-    }
-
-    public Page<BookResponse> getAllEntities(Pageable pageable) {
-
-        var bookPage = bookRepository.findAll(pageable);
-        var page = bookPage.map(item ->
+        return toBookResponses(List.of(book)).getFirst();
+    }
+
+    /**
+     * Lists books in two phases: the database pages and sorts book ids only, then the books of the page,
+     * their copies (with borrowers) and genres (with genre names) are loaded by ids with {@link #getByIds}.
+     * A page therefore costs a fixed number of queries and holds only its own rows, regardless of the catalog size.
+     * <p>
+     * First phase: ids of the page with 'total' computed per {@link CountMode}. The listing has no filters,
+     * so the estimated total comes from planner statistics of 'BOOKS'.
+     */
+    public CountedPage<UUID> getPageOfBookIds(Pageable pageable, CountMode countMode) {
+        if (countMode == CountMode.EXACT) {
+            var idPage = bookRepository.findPageOfIds(pageable);
+            return new CountedPage<>(idPage.getContent(), idPage.getTotalElements());
+        }
+
+        var ids = bookRepository.findSliceOfIds(pageable).getContent();
+        return new CountedPage<>(ids, pageQueryExecutor.total(countMode, "books", List.of(), bookRepository::count));
+    }
+
+    /**
+     * Full-text search, see {@link BookSearch}. Books are loaded for the page of matching ids only.
+     */
+    public CountedPage<BookResponse> search(String query, SearchMode mode, String genre, Boolean available,
+                                            Pageable pageable, CountMode countMode) {
+        var ids = bookSearch.findIds(query, mode, genre, available, pageable, countMode);
+        return new CountedPage<>(getByIds(ids.items()), ids.total());
+    }
+
+    /**
+     * Second phase of {@link #getPageOfBookIds}: books in the order of the given ids, in one query each for books,
+     * copies and genres. With {@link BookDocumentReader} enabled, a single query of JSON documents.
+     */
+    public List<BookResponse> getByIds(List<UUID> bookIds) {
+        return toBookResponsesByIds(bookIds);
+    }
+
+    private List<BookResponse> toBookResponsesByIds(final List<UUID> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        if (documentReader.isEnabled()) {
+            return documentReader.findByIds(bookIds);
+        }
+
+        var booksById = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        var books = bookIds.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        return toBookResponses(books);
+    }
+
+    /**
+     * First phase of a page of books by the keyset 'createdAt, id' instead of an offset, every page is an index seek:
+     * ids of the page and the next cursor. The books are loaded with {@link #getByIds}.
+     */
+    public KeysetPage<UUID> getBookIdsAfter(KeysetCursor cursor, int size) {
+        return pageQueryExecutor.findIdsAfter(Book.class, null, cursor, size);
+    }
+
+    private List<BookResponse> toBookResponses(final List<Book> books) {
+        if (books.isEmpty()) {
+            return List.of();
+        }
+        var bookIds = books.stream().map(Book::getId).toList();
+        var bookItems = bookItemRepository.findAllWithUserByBookIdIn(bookIds).stream()
+                .collect(Collectors.groupingBy(BookItem::getBookId));
+        var bookGenres = bookGenresRepository.findAllWithGenreByBookIdIn(bookIds).stream()
+                .collect(Collectors.groupingBy(BookGenre::getBook_id));
+
+        return books.stream().map(book ->
                 BookResponse.builder()
-                        .id(item.getId())
-                        .title(item.getTitle())
-                        .author(item.getAuthor())
-                        .description(item.getDescription())
-                        .edition(item.getEdition())
-                        .publicationYear(item.getPublicationYear())
-                        .updatedAt(item.getUpdatedAt())
-                        .createdAt(item.getCreatedAt())
-                        .deletedAt(item.getDeletedAt())
-                        .bookItems(Optional.ofNullable(item.getBookItemList()).orElse(Collections.emptyList()).stream().map(
+                        .id(book.getId())
+                        .title(book.getTitle())
+                        .author(book.getAuthor())
+                        .description(book.getDescription())
+                        .edition(book.getEdition())
+                        .publicationYear(book.getPublicationYear())
+                        .updatedAt(book.getUpdatedAt())
+                        .createdAt(book.getCreatedAt())
+                        .deletedAt(book.getDeletedAt())
+                        .bookItems(bookItems.getOrDefault(book.getId(), Collections.emptyList()).stream().map(
                                 bookItem -> new BookItemDto(
                                         bookItem.getId(),
                                         Optional.ofNullable(bookItem.getUserId()).map(user -> new UserDto(
-                                                bookItem.getUserId().getId(),
-                                                bookItem.getUserId().getUsername(),
-                                                bookItem.getUserId().getName(),
-                                                bookItem.getUserId().getSurname(),
-                                                bookItem.getUserId().getEmail(),
-                                                bookItem.getUserId().getPhoneNumber(),
-                                                bookItem.getUserId().getAddress()
+                                                user.getId(),
+                                                user.getUsername(),
+                                                user.getName(),
+                                                user.getSurname(),
+                                                user.getEmail(),
+                                                user.getPhoneNumber(),
+                                                user.getAddress()
                                         )).orElse(null),
                                         bookItem.getStatus(),
                                         bookItem.getBorrowedAt(),
                                         bookItem.getReturnedAt()
                                 )).collect(Collectors.toList()))
-                        .genres(Optional.ofNullable(item.getBookGenres()).orElse(Collections.emptyList()).stream().map(
+                        .genres(bookGenres.getOrDefault(book.getId(), Collections.emptyList()).stream().map(
                                 genre -> new BookGenreDto(
                                         genre.getGenre().getName()
                                 )).collect(Collectors.toList())
                         )
                         .build()
-        );
-
-        return page;
+        ).toList();
     }
 
     public void removeBookById(UUID bookId) {
         bookRepository.deleteById(bookId);
+        responseCache.evict(bookId);
+        typeahead.remove(bookId);
     }
 
     public void removeBookItemById(UUID bookItemId) {
+        var bookItem = bookItemRepository.findById(bookItemId);
         bookItemRepository.deleteById(bookItemId);
+        bookItem.ifPresent(item -> responseCache.evict(item.getBookId()));
     }
 
     public void removeAllBooks() {
         bookRepository.deleteAll();
+        responseCache.evictAll();
+        typeahead.clear();
     }
 
     public void removeAllBookItems() {
         bookItemRepository.deleteAll();
+        availabilityIndex.clear();
+        responseCache.evictAll();
     }
 
     public void removeAllGenres() {
         genreRepository.deleteAll();
+        responseCache.evictAll();
     }
 
     public void removeAllBookGenres() {
         bookGenresRepository.deleteAll();
+        responseCache.evictAll();
     }
 
     public void removeAllHistory() {
@@ -264,14 +475,63 @@ public class BookService {
         removeAllBooks();
     }
 
-    public Page<BookItemDto> getBookItems(UUID bookItemId, UUID bookId, String bookItemStatus, String startDate, String endDate, Pageable pageable
-    ) {
+    /**
+     * First phase of a page of book items (copies): ids of the page, filtered and sorted by the database,
+     * with 'total' computed per {@link CountMode}.
+     */
+    public CountedPage<UUID> getBookItemIds(UUID bookItemId, UUID bookId, String bookItemStatus, String startDate, String endDate,
+                                            Pageable pageable, CountMode countMode) {
+        var specification = bookItemSpecification(bookItemId, bookId, bookItemStatus, startDate, endDate);
+
+        var ids = pageQueryExecutor.findIds(BookItem.class, specification, pageable);
+        var total = pageQueryExecutor.total(countMode, "book_items",
+                Arrays.asList(bookItemId, bookId, bookItemStatus, startDate, endDate),
+                () -> bookItemRepository.count(specification));
+        return new CountedPage<>(ids, total);
+    }
+
+    /**
+     * Second phase of {@link #getBookItemIds} and {@link #getBookItemIdsAfter}:
+     * book items (copies) in the order of the given ids.
+     */
+    public List<BookItemDto> getBookItemsByIds(List<UUID> bookItemIds) {
+        if (bookItemIds.isEmpty()) {
+            return List.of();
+        }
+        var bookItemsById = bookItemRepository.findAllWithUserByIdIn(bookItemIds).stream()
+                .collect(Collectors.toMap(BookItem::getId, Function.identity()));
+
+        return bookItemIds.stream()
+                .map(bookItemsById::get)
+                .filter(Objects::nonNull)
+                .map(converter::bookItemDtoConverter)
+                .toList();
+    }
+
+    /**
+     * First phase of a page of book items (copies) with the same filters as {@link #getBookItemIds}, paged by the keyset
+     * 'createdAt, id' instead of an offset: ids of the page and the next cursor. The copies are loaded with
+     * {@link #getBookItemsByIds}.
+     */
+    public KeysetPage<UUID> getBookItemIdsAfter(UUID bookItemId, UUID bookId, String bookItemStatus, String startDate, String endDate,
+                                                KeysetCursor cursor, int size) {
+        var specification = bookItemSpecification(bookItemId, bookId, bookItemStatus, startDate, endDate);
+        return pageQueryExecutor.findIdsAfter(BookItem.class, specification, cursor, size);
+    }
+
+    private Specification<BookItem> bookItemSpecification(UUID bookItemId, UUID bookId, String bookItemStatus, String startDate, String endDate) {
         var startDateConverted = Utils.stringToLocalDateConverter(startDate);
         var endDateConverted = Utils.stringToLocalDateConverter(endDate);
         var bookItemStatusEnum = Utils.convertToEnum(bookItemStatus, BookItemStatus.class);
 
-        var specification = BookItemSpecification.filterBookItem(bookItemId, bookId, bookItemStatusEnum, startDateConverted, endDateConverted);
-        var bookPage = bookItemRepository.findAll(specification, pageable);
-        return converter.toBookItemDto(bookPage);
+        return BookItemSpecification.filterBookItem(bookItemId, bookId, bookItemStatusEnum, startDateConverted, endDateConverted);
+    }
+
+    public Page<BookItemHistoryDto> getBookItemHistory(String startDate, String endDate, Pageable pageable) {
+        var from = Utils.stringToLocalDateConverter(startDate);
+        var to = Optional.ofNullable(Utils.stringToLocalDateConverter(endDate)).orElseGet(Utils::currentDate);
+
+        return bookItemHistoryRepository.findAllByActionAtGreaterThanEqualAndActionAtLessThan(from, to, pageable)
+                .map(BookItemHistoryMapper::toDto);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,292 @@
+package net.library.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.dto.BookSuggestionDto;
+import net.library.repository.BookRepository;
+import net.library.repository.projection.BookTitle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory autocomplete of book titles and authors: every word of the query matches the beginning of a word
+ * of the title or the author, e.g. "gre gats" suggests "The Great Gatsby". Shorter titles are suggested first.
+ * <p>
+ * Books are held in an immutable snapshot of primitive arrays: the sorted words of all books, and for every word
+ * the ascending positions of its books (books are positioned by rank), so the words starting with a prefix are one
+ * binary search away and their books are merged in rank order until enough suggestions are found.
+ * Books added or removed through {@link BookService} are kept in a small map of changes consulted next to
+ * the snapshot. The snapshot is rebuilt from 'BOOKS' at startup, every {@code library.typeahead.rebuild-interval},
+ * which also picks up bulk imports and updates made in SQL, and as soon as there are more than
+ * {@code library.typeahead.max-changes} changes.
+ */
+@Slf4j
+@Component
+public class BookTypeahead {
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Comparator<Suggestion> RANK = Comparator.comparingInt((Suggestion suggestion) -> suggestion.title().length())
+            .thenComparing(Suggestion::title, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Suggestion::id);
+    // above this number of matching words, scanning books in rank order finds suggestions sooner than merging
+    private static final int MERGE_LIMIT = 64;
+
+    private final BookRepository bookRepository;
+    private final int maxChanges;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ConcurrentHashMap<UUID, Change> changes = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+
+    public BookTypeahead(final BookRepository bookRepository,
+                         @Value("${library.typeahead.max-changes:1000}") final int maxChanges) {
+        this.bookRepository = bookRepository;
+        this.maxChanges = maxChanges;
+    }
+
+    public List<BookSuggestionDto> suggest(final String query, final int limit) {
+        var prefixes = words(query).toArray(String[]::new);
+        if (prefixes.length == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        var suggestions = snapshot.find(prefixes, limit, changes.keySet());
+        changes.values().stream()
+                .map(Change::book)
+                .filter(book -> book != null && book.matches(prefixes))
+                .forEach(suggestions::add);
+
+        return suggestions.stream()
+                .sorted(RANK)
+                .limit(limit)
+                .map(book -> new BookSuggestionDto(book.id(), book.title(), book.author()))
+                .toList();
+    }
+
+    public void add(final UUID bookId, final String title, final String author) {
+        change(bookId, new Suggestion(bookId, title, author, words(title + " " + author).toArray(String[]::new)));
+    }
+
+    public void remove(final UUID bookId) {
+        change(bookId, null);
+    }
+
+    public void clear() {
+        snapshot = Snapshot.build(List.of());
+        changes.clear();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${library.typeahead.rebuild-interval:PT10M}",
+            initialDelayString = "${library.typeahead.rebuild-interval:PT10M}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            var start = System.nanoTime();
+            // changes made up to now are committed, so they are part of the books read below
+            var stamp = clock.get();
+            snapshot = Snapshot.build(bookRepository.findAllTitles());
+            changes.values().removeIf(change -> change.stamp() <= stamp);
+            log.info("Typeahead index rebuilt [books={}, words={}, durationMs={}]", snapshot.titles.length,
+                    snapshot.words.length, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private void change(final UUID bookId, final Suggestion book) {
+        changes.put(bookId, new Change(book, clock.incrementAndGet()));
+        if (changes.size() > maxChanges && !rebuilding.get()) {
+            Thread.ofVirtual().name("typeahead-rebuild").start(this::rebuild);
+        }
+    }
+
+    /**
+     * Lower-cased words without diacritics, "Les Misérables" is found by "les miserables".
+     */
+    private static List<String> words(final String text) {
+        if (text == null) {
+            return List.of();
+        }
+        var folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(folded))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private record Change(Suggestion book, long stamp) {
+    }
+
+    private record Suggestion(UUID id, String title, String author, String[] words) {
+
+        boolean matches(final String[] prefixes) {
+            return Arrays.stream(prefixes).allMatch(prefix -> Arrays.stream(words).anyMatch(word -> word.startsWith(prefix)));
+        }
+    }
+
+    private static final class Snapshot {
+        // books by rank: position i holds the i-th book of RANK
+        private final long[] idHigh;
+        private final long[] idLow;
+        private final String[] titles;
+        private final String[] authors;
+        // sorted distinct words; the books of words[w] are postings[postingStart[w] .. postingStart[w + 1])
+        private final String[] words;
+        private final int[] postingStart;
+        private final int[] postings;
+        // the words of book i are bookWords[bookWordStart[i] .. bookWordStart[i + 1])
+        private final int[] bookWordStart;
+        private final int[] bookWords;
+
+        private Snapshot(final List<Suggestion> books, final String[] words) {
+            var size = books.size();
+            this.idHigh = new long[size];
+            this.idLow = new long[size];
+            this.titles = new String[size];
+            this.authors = new String[size];
+            this.words = words;
+            this.bookWordStart = new int[size + 1];
+
+            var wordIds = new HashMap<String, Integer>(words.length * 2);
+            for (int w = 0; w < words.length; w++) {
+                wordIds.put(words[w], w);
+            }
+            var counts = new int[words.length + 1];
+            var bookWordCount = 0;
+            for (int i = 0; i < size; i++) {
+                var book = books.get(i);
+                idHigh[i] = book.id().getMostSignificantBits();
+                idLow[i] = book.id().getLeastSignificantBits();
+                titles[i] = book.title();
+                authors[i] = book.author();
+                bookWordCount += book.words().length;
+                bookWordStart[i + 1] = bookWordCount;
+                for (var word : book.words()) {
+                    counts[wordIds.get(word) + 1]++;
+                }
+            }
+
+            this.postingStart = new int[words.length + 1];
+            for (int w = 0; w < words.length; w++) {
+                postingStart[w + 1] = postingStart[w] + counts[w + 1];
+            }
+            this.postings = new int[bookWordCount];
+            this.bookWords = new int[bookWordCount];
+            var next = Arrays.copyOf(postingStart, words.length);
+            for (int i = 0; i < size; i++) {
+                var book = books.get(i);
+                for (int x = 0; x < book.words().length; x++) {
+                    var w = wordIds.get(book.words()[x]);
+                    postings[next[w]++] = i;
+                    bookWords[bookWordStart[i] + x] = w;
+                }
+            }
+        }
+
+        static Snapshot build(final List<BookTitle> source) {
+            var books = source.stream()
+                    .map(book -> new Suggestion(book.getId(), book.getTitle(), book.getAuthor(),
+                            words(book.getTitle() + " " + book.getAuthor()).toArray(String[]::new)))
+                    .sorted(RANK)
+                    .toList();
+            var words = new TreeSet<String>();
+            books.forEach(book -> words.addAll(Arrays.asList(book.words())));
+            return new Snapshot(books, words.toArray(String[]::new));
+        }
+
+        /**
+         * Up to 'limit' books matching all prefixes in rank order, skipping the books with pending changes.
+         */
+        List<Suggestion> find(final String[] prefixes, final int limit, final Set<UUID> changed) {
+            var from = new int[prefixes.length];
+            var to = new int[prefixes.length];
+            var driver = 0;
+            for (int p = 0; p < prefixes.length; p++) {
+                from[p] = lowerBound(prefixes[p]);
+                to[p] = lowerBound(prefixes[p] + Character.MAX_VALUE);
+                if (from[p] == to[p]) {
+                    return new ArrayList<>();
+                }
+                if (postingStart[to[p]] - postingStart[from[p]] < postingStart[to[driver]] - postingStart[from[driver]]) {
+                    driver = p;
+                }
+            }
+
+            var found = new ArrayList<Suggestion>(limit);
+            var matchingPostings = postingStart[to[driver]] - postingStart[from[driver]];
+            if (to[driver] - from[driver] > MERGE_LIMIT && (long) matchingPostings * MERGE_LIMIT >= titles.length) {
+                for (int i = 0; i < titles.length && found.size() < limit; i++) {
+                    collect(i, from, to, changed, found);
+                }
+                return found;
+            }
+
+            // k-way merge of the ascending book lists of the words starting with the driving prefix
+            var cursors = new PriorityQueue<int[]>(Comparator.comparingInt(cursor -> postings[cursor[0]]));
+            for (int w = from[driver]; w < to[driver]; w++) {
+                cursors.add(new int[]{postingStart[w], postingStart[w + 1]});
+            }
+            var previous = -1;
+            while (!cursors.isEmpty() && found.size() < limit) {
+                var cursor = cursors.poll();
+                var book = postings[cursor[0]++];
+                if (cursor[0] < cursor[1]) {
+                    cursors.add(cursor);
+                }
+                if (book != previous) {
+                    collect(book, from, to, changed, found);
+                    previous = book;
+                }
+            }
+            return found;
+        }
+
+        private void collect(final int book, final int[] from, final int[] to, final Set<UUID> changed,
+                             final List<Suggestion> found) {
+            for (int p = 0; p < from.length; p++) {
+                if (!hasWordIn(book, from[p], to[p])) {
+                    return;
+                }
+            }
+            var id = new UUID(idHigh[book], idLow[book]);
+            if (!changed.contains(id)) {
+                found.add(new Suggestion(id, titles[book], authors[book], null));
+            }
+        }
+
+        private boolean hasWordIn(final int book, final int from, final int to) {
+            for (int x = bookWordStart[book]; x < bookWordStart[book + 1]; x++) {
+                if (bookWords[x] >= from && bookWords[x] < to) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int lowerBound(final String prefix) {
+            var index = Arrays.binarySearch(words, prefix);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package net.library.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.library.repository.BookItemRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional group commit for borrowing of any available copy.
+ * <p>
+ * Borrow requests arriving within {@code library.borrow.group-commit.window} are collected (up to
+ * {@code max-batch} requests, across all books) by a single worker thread and allocated in one database
+ * transaction, so a burst of checkouts pays for one commit instead of one per request. Every request thread
+ * waits for its own result. When the shared transaction fails (e.g. one request refers to an unknown user),
+ * the batch is replayed one request per transaction, so the error reaches only the request which caused it.
+ */
+@Slf4j
+@Component
+public class BorrowGroupCommitter {
+    private final BookItemRepository bookItemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatch;
+    private final BlockingQueue<PendingBorrow> queue;
+    private volatile boolean running;
+    private Thread worker;
+
+    public BorrowGroupCommitter(final BookItemRepository bookItemRepository,
+                                final PlatformTransactionManager transactionManager,
+                                final MeterRegistry meterRegistry,
+                                @Value("${library.borrow.group-commit.enabled:false}") final boolean enabled,
+                                @Value("${library.borrow.group-commit.window:5ms}") final Duration window,
+                                @Value("${library.borrow.group-commit.max-batch:64}") final int maxBatch,
+                                @Value("${library.borrow.group-commit.queue-capacity:10000}") final int queueCapacity) {
+        this.bookItemRepository = bookItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.batchSize = DistributionSummary.builder("library.borrow.group_commit.batch.size")
+                .description("Number of borrow requests committed in one transaction")
+                .register(meterRegistry);
+        this.queueDelay = Timer.builder("library.borrow.group_commit.queue.delay")
+                .description("Time a borrow request waits before its batch is started")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.enabled = enabled;
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = Thread.ofPlatform().name("borrow-group-commit").daemon().start(this::run);
+        log.info("Borrow group commit started [window={}, maxBatch={}]", window, maxBatch);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the borrow request and waits for the batch it joins to commit, see
+     * {@link BookItemRepository#selectAvailableBookItemIdAndUpdate} for the result.
+     * Falls back to a standalone transaction when the queue is full.
+     */
+    public List<UUID> borrow(final UUID bookId, final UUID userId, final LocalDateTime currentTime, final LocalDate dueDate) {
+        var pending = new PendingBorrow(bookId, userId, currentTime, dueDate, System.nanoTime(), new CompletableFuture<>());
+        if (!running || !queue.offer(pending)) {
+            return bookItemRepository.selectAvailableBookItemIdAndUpdate(bookId, userId, currentTime, dueDate);
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<PendingBorrow>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                var deadline = System.nanoTime() + window.toNanos();
+                while (batch.size() < maxBatch) {
+                    var next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("Borrow group commit failed [size={}]", batch.size(), e);
+                batch.forEach(pending -> pending.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(final List<PendingBorrow> batch) {
+        var startedAt = System.nanoTime();
+        batchSize.record(batch.size());
+        batch.forEach(pending -> queueDelay.record(startedAt - pending.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        List<List<UUID>> results;
+        try {
+            results = transactionTemplate.execute(status -> batch.stream().map(this::allocate).toList());
+        } catch (RuntimeException e) {
+            log.warn("Borrow batch rolled back, replaying one by one [size={}]", batch.size(), e);
+            batch.forEach(this::commitAlone);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(results.get(i));
+        }
+    }
+
+    private void commitAlone(final PendingBorrow pending) {
+        try {
+            pending.result().complete(transactionTemplate.execute(status -> allocate(pending)));
+        } catch (RuntimeException e) {
+            pending.result().completeExceptionally(e);
+        }
+    }
+
+    private List<UUID> allocate(final PendingBorrow pending) {
+        return bookItemRepository.selectAvailableBookItemIdAndUpdate(pending.bookId(), pending.userId(),
+                pending.currentTime(), pending.dueDate());
+    }
+
+    private record PendingBorrow(UUID bookId,
+                                 UUID userId,
+                                 LocalDateTime currentTime,
+                                 LocalDate dueDate,
+                                 long enqueuedAt,
+                                 CompletableFuture<List<UUID>> result) {
+    }
+}
@@ -0,0 +1,95 @@
+package net.library.service;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Strong ETags of catalog responses, computed by one aggregate query over row versions without loading
+ * the entities the responses are built from.
+ * <p>
+ * A copy contributes 'VERSION' and 'UPDATED_AT' and the system column 'XMIN', which changes with every update
+ * of a row, also the native updates which do not touch 'VERSION'. Books, borrowers and genres have no version
+ * column and contribute 'XMIN' (plus 'UPDATED_AT' of books).
+ */
+@Component
+public class CatalogETags {
+    private static final String BOOK_FINGERPRINTS_SQL = """
+            SELECT b.id,
+                   md5(concat_ws('|', b.xmin, b.updated_at,
+                       (SELECT string_agg(concat_ws(',', bi.id, bi.version, bi.updated_at, bi.xmin, u.xmin), ';' ORDER BY bi.id)
+                        FROM book_items bi
+                        LEFT JOIN users u ON u.id = bi.user_id
+                        WHERE bi.book_id = b.id),
+                       (SELECT string_agg(concat_ws(',', bg.id, bg.xmin, g.xmin), ';' ORDER BY bg.id)
+                        FROM book_genres bg
+                        JOIN genres g ON g.id = bg.genre_id
+                        WHERE bg.book_id = b.id))) AS fingerprint
+            FROM books b
+            WHERE b.id IN (:ids)
+            """;
+    private static final String BOOK_ITEM_FINGERPRINTS_SQL = """
+            SELECT bi.id, md5(concat_ws('|', bi.version, bi.updated_at, bi.xmin)) AS fingerprint
+            FROM book_items bi
+            WHERE bi.id IN (:ids)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CatalogETags(final NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * ETag of {@code GET /books/{id}}, null when the book is not found.
+     */
+    public String forBook(final UUID bookId) {
+        var fingerprints = fingerprints(BOOK_FINGERPRINTS_SQL, List.of(bookId));
+        return fingerprints.isEmpty() ? null : digest(List.of(bookId), fingerprints, List.of());
+    }
+
+    /**
+     * ETag of a page of books in the given order, 'pageState' are the other fields of the page (e.g. total).
+     */
+    public String forBooks(final List<UUID> bookIds, final Object... pageState) {
+        return digest(bookIds, fingerprints(BOOK_FINGERPRINTS_SQL, bookIds), List.of(pageState));
+    }
+
+    /**
+     * ETag of a page of book items (copies) in the given order, see {@link #forBooks}.
+     */
+    public String forBookItems(final List<UUID> bookItemIds, final Object... pageState) {
+        return digest(bookItemIds, fingerprints(BOOK_ITEM_FINGERPRINTS_SQL, bookItemIds), List.of(pageState));
+    }
+
+    private Map<UUID, String> fingerprints(final String sql, final Collection<UUID> ids) {
+        var fingerprints = new HashMap<UUID, String>();
+        if (ids.isEmpty()) {
+            return fingerprints;
+        }
+        jdbcTemplate.query(sql, Map.of("ids", ids),
+                (RowCallbackHandler) rs -> fingerprints.put(rs.getObject("id", UUID.class), rs.getString("fingerprint")));
+        return fingerprints;
+    }
+
+    private static String digest(final List<UUID> ids, final Map<UUID, String> fingerprints, final List<Object> pageState) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            pageState.forEach(state -> digest.update((state + "|").getBytes(StandardCharsets.UTF_8)));
+            ids.forEach(id -> digest.update((id + ":" + fingerprints.get(id) + ";").getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package net.library.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.request.DataFormat;
+import net.library.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Export of the whole catalog (books, copies, genres) in constant memory.
+ * <p>
+ * Rows are read through a server-side cursor: inside the read-only transaction the Postgres driver fetches
+ * {@code library.export.fetch-size} rows at a time instead of the whole result, and every row is written
+ * to the response before the next batch is fetched.
+ */
+@Slf4j
+@Component
+public class CatalogExporter {
+    private static final String NDJSON_SQL = "SELECT CAST(" + BookRepository.BOOK_DOCUMENT + " AS text) AS document FROM books b ORDER BY b.id";
+    private static final String CSV_SQL = """
+            SELECT b.id AS book_id, b.title, b.author, b.publisher, b.edition, b.publication_year,
+                   (SELECT string_agg(g.name, ';' ORDER BY g.name)
+                    FROM book_genres bg
+                    JOIN genres g ON g.id = bg.genre_id
+                    WHERE bg.book_id = b.id) AS genres,
+                   bi.id AS book_item_id, bi.status, bi.user_id, bi.borrowed_at, bi.returned_at, bi.due_date
+            FROM books b
+            LEFT JOIN book_items bi ON bi.book_id = b.id
+            ORDER BY b.id, bi.id
+            """;
+    private static final String[] CSV_COLUMNS = {"book_id", "title", "author", "publisher", "edition", "publication_year",
+            "genres", "book_item_id", "status", "user_id", "borrowed_at", "returned_at", "due_date"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public CatalogExporter(final DataSource dataSource,
+                           final PlatformTransactionManager transactionManager,
+                           @Value("${library.export.fetch-size:500}") final int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    public void export(final DataFormat format, final OutputStream outputStream) {
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        var rows = new AtomicLong();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (format == DataFormat.CSV) {
+                write(writer, String.join(",", CSV_COLUMNS));
+                jdbcTemplate.query(CSV_SQL, (RowCallbackHandler) rs -> {
+                    write(writer, csvLine(rs));
+                    rows.incrementAndGet();
+                });
+            } else {
+                jdbcTemplate.query(NDJSON_SQL, (RowCallbackHandler) rs -> {
+                    write(writer, rs.getString("document"));
+                    rows.incrementAndGet();
+                });
+            }
+        });
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Catalog exported [format={}, rows={}]", format, rows.get());
+    }
+
+    private static String csvLine(final ResultSet rs) throws SQLException {
+        var line = new StringBuilder();
+        for (int x = 0; x < CSV_COLUMNS.length; x++) {
+            if (x > 0) {
+                line.append(',');
+            }
+            var value = rs.getString(CSV_COLUMNS[x]);
+            if (value != null) {
+                line.append(csvValue(value));
+            }
+        }
+        return line.toString();
+    }
+
+    private static String csvValue(final String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static void write(final Writer writer, final String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package net.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.request.BookRequest;
+import net.library.model.request.DataFormat;
+import net.library.model.response.BookImportReport;
+import net.library.util.CsvLine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Bulk import of books, and optionally their copies, from CSV or NDJSON with the fields of {@link BookRequest}
+ * plus 'copies'. CSV files start with a header naming the columns.
+ * <p>
+ * Chunks of the file are parsed, validated and staged by {@link CopyImportPipeline}, then moved to 'BOOKS' and
+ * 'BOOK_ITEMS' by one set-based statement per chunk. Rows repeating an earlier row of the chunk are skipped by
+ * 'DISTINCT ON' of the load, rows matching a stored book, including one imported by an earlier chunk, are skipped
+ * by a null-safe lookup of the key of the 'unique_title_edition_year' constraint and by the constraint itself; all
+ * of them are reported as duplicates. Nothing is remembered between chunks, so the memory of an import does not
+ * grow with the file.
+ */
+@Slf4j
+@Component
+public class CatalogImporter {
+    private static final String STAGING_SQL = """
+            CREATE TEMP TABLE book_import
+            (
+                line             BIGINT,
+                title            VARCHAR(200),
+                author           VARCHAR(200),
+                description      VARCHAR(1000),
+                publisher        VARCHAR(1000),
+                edition          VARCHAR(200),
+                publication_year INT,
+                copies           INT
+            ) ON COMMIT DROP
+            """;
+    private static final String COPY_SQL = """
+            COPY book_import (line, title, author, description, publisher, edition, publication_year, copies)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    private static final String LOAD_SQL = """
+            WITH firsts AS (
+                SELECT DISTINCT ON (title, edition, publication_year)
+                       line, title, author, description, publisher, edition, publication_year, copies
+                FROM book_import
+                ORDER BY title, edition, publication_year, line
+            ), inserted AS (
+                INSERT INTO books (title, author, description, publisher, edition, publication_year)
+                SELECT f.title, f.author, f.description, f.publisher, f.edition, f.publication_year
+                FROM firsts f
+                WHERE NOT EXISTS (SELECT 1
+                                  FROM books b
+                                  WHERE b.title = f.title
+                                    AND b.edition IS NOT DISTINCT FROM f.edition
+                                    AND b.publication_year IS NOT DISTINCT FROM f.publication_year)
+                ORDER BY f.line
+                ON CONFLICT ON CONSTRAINT unique_title_edition_year DO NOTHING
+                RETURNING id, title, edition, publication_year
+            ), copies AS (
+                INSERT INTO book_items (book_id)
+                SELECT i.id
+                FROM inserted i
+                JOIN firsts f ON f.title = i.title
+                    AND f.edition IS NOT DISTINCT FROM i.edition
+                    AND f.publication_year IS NOT DISTINCT FROM i.publication_year
+                CROSS JOIN generate_series(1, f.copies)
+                RETURNING id
+            )
+            SELECT (SELECT COUNT(*) FROM inserted) AS books, (SELECT COUNT(*) FROM copies) AS copies
+            """;
+    private static final CopyImportPipeline.Staging STAGING = new CopyImportPipeline.Staging(STAGING_SQL, COPY_SQL, LOAD_SQL);
+    private static final Set<String> REQUIRED_COLUMNS = Set.of("title", "author", "publisher");
+
+    private final CopyImportPipeline pipeline;
+    private final ObjectMapper objectMapper;
+    private final int maxCopies;
+
+    public CatalogImporter(final CopyImportPipeline pipeline,
+                           final ObjectMapper objectMapper,
+                           @Value("${library.import.max-copies:1000}") final int maxCopies) {
+        this.pipeline = pipeline;
+        this.objectMapper = objectMapper;
+        this.maxCopies = maxCopies;
+    }
+
+    public BookImportReport importBooks(final DataFormat format, final InputStream inputStream) {
+        var bookTotals = new BookTotals();
+
+        var totals = pipeline.run(format, inputStream, new BookParser(),
+                (rows, chunkTotals) -> load(rows, chunkTotals, bookTotals));
+
+        log.info("Books imported [format={}, received={}, imported={}, copies={}, duplicates={}, rejected={}, rowsPerSecond={}]",
+                format, totals.received(), totals.imported(), bookTotals.copies, bookTotals.duplicates, totals.rejected(),
+                Math.round(totals.rowsPerSecond()));
+
+        return BookImportReport.builder()
+                .received(totals.received())
+                .imported(totals.imported())
+                .copies(bookTotals.copies)
+                .duplicates(bookTotals.duplicates)
+                .rejected(totals.rejected())
+                .rejections(totals.rejections())
+                .durationMs(totals.durationMs())
+                .rowsPerSecond(totals.rowsPerSecond())
+                .build();
+    }
+
+    private void load(final List<CopyImportPipeline.Row<ImportedBook>> rows, final CopyImportPipeline.Totals totals,
+                      final BookTotals bookTotals) {
+        var staging = new StringBuilder();
+        var staged = 0L;
+        for (var row : rows) {
+            var book = row.value();
+            staging.append(CsvLine.join(row.line(), book.title(), book.author(), book.description(), book.publisher(),
+                    book.edition(), book.publication(), Objects.requireNonNullElse(book.copies(), 0))).append('\n');
+            staged++;
+        }
+        if (staged == 0) {
+            return;
+        }
+
+        var loaded = pipeline.load(STAGING, staging,
+                (rs, rowNum) -> new long[]{rs.getLong("books"), rs.getLong("copies")}).getFirst();
+        totals.imported(loaded[0]);
+        bookTotals.copies += loaded[1];
+        bookTotals.duplicates += staged - loaded[0];
+    }
+
+    private static Integer toInteger(final Map<String, String> row, final String column) {
+        var value = row.get(column);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + ": not a number");
+        }
+    }
+
+    record ImportedBook(String title, String author, String description, String publisher, String edition,
+                        Integer publication, Integer copies) {
+    }
+
+    private final class BookParser implements CopyImportPipeline.RowParser<ImportedBook> {
+
+        @Override
+        public Set<String> requiredColumns() {
+            return REQUIRED_COLUMNS;
+        }
+
+        @Override
+        public ImportedBook fromCsv(final Map<String, String> values) {
+            return validate(new ImportedBook(values.get("title"), values.get("author"), values.get("description"),
+                    values.get("publisher"), values.get("edition"), toInteger(values, "publication"),
+                    toInteger(values, "copies")));
+        }
+
+        @Override
+        public ImportedBook fromJson(final String line) {
+            try {
+                return validate(objectMapper.readValue(line, ImportedBook.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Not a JSON object of a book: " + e.getOriginalMessage());
+            }
+        }
+
+        private ImportedBook validate(final ImportedBook book) {
+            pipeline.validate(new BookRequest(book.title(), book.author(), book.description(), book.publisher(),
+                    book.edition(), book.publication()));
+            if (book.copies() != null && (book.copies() < 0 || book.copies() > maxCopies)) {
+                throw new IllegalArgumentException("copies: must be between 0 and " + maxCopies);
+            }
+            return book;
+        }
+    }
+
+    private static class BookTotals {
+        private long copies;
+        private long duplicates;
+    }
+}
@@ -0,0 +1,279 @@
+package net.library.service;
+
+import jakarta.validation.Validator;
+import net.library.exception.InvalidImportException;
+import net.library.model.request.DataFormat;
+import net.library.model.response.ImportRejection;
+import net.library.util.CsvLine;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chunked import of CSV or NDJSON files through COPY, shared by {@link CatalogImporter} and {@link UserImporter}.
+ * <p>
+ * Lines are read in chunks of {@code library.import.batch-size}; every chunk is parsed and validated in parallel
+ * by the {@link RowParser} of the importer, rows it rejects are counted and the valid ones are handed to the
+ * {@link ChunkLoader}. The loader stages them with {@link #load}: the staged lines are streamed with COPY into
+ * a temporary table and moved to their tables by one set-based load statement. Every chunk is committed on its own,
+ * so a failing chunk leaves the earlier ones imported.
+ */
+@Component
+public class CopyImportPipeline {
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final int batchSize;
+    private final int maxReportedRejections;
+
+    public CopyImportPipeline(final JdbcTemplate jdbcTemplate,
+                              final PlatformTransactionManager transactionManager,
+                              final Validator validator,
+                              @Value("${library.import.batch-size:5000}") final int batchSize,
+                              @Value("${library.import.max-reported-rejections:100}") final int maxReportedRejections) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.maxReportedRejections = maxReportedRejections;
+    }
+
+    public <T> Totals run(final DataFormat format, final InputStream inputStream, final RowParser<T> parser,
+                          final ChunkLoader<T> loader) {
+        var totals = new Totals(maxReportedRejections);
+
+        try (var reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            Function<String, T> parse = format == DataFormat.CSV ? null : parser::fromJson;
+            var chunk = new ArrayList<Line>(batchSize);
+            var lineNumber = 0L;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                if (parse == null) {
+                    parse = csvParser(text, parser);
+                    continue;
+                }
+                chunk.add(new Line(lineNumber, text));
+                if (chunk.size() == batchSize) {
+                    load(chunk, parse, loader, totals);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                load(chunk, parse, loader, totals);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        totals.durationMs = (System.nanoTime() - totals.startedAt) / 1_000_000;
+        return totals;
+    }
+
+    /**
+     * Rejects the row with the constraint violations of the request it is imported as, if any.
+     */
+    public void validate(final Object request) {
+        var violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+    }
+
+    /**
+     * Copies the staged lines (CSV in the column order of {@link Staging#copySql()}) into the staging table and runs
+     * the load statement, in one transaction. Returns the rows of the load statement.
+     */
+    public <R> List<R> load(final Staging staging, final CharSequence lines, final RowMapper<R> rowMapper) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.execute(staging.tableSql());
+            jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class).getCopyAPI()
+                            .copyIn(staging.copySql(), new StringReader(lines.toString()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return jdbcTemplate.query(staging.loadSql(), rowMapper);
+        });
+    }
+
+    private <T> void load(final List<Line> chunk, final Function<String, T> parse, final ChunkLoader<T> loader,
+                          final Totals totals) {
+        var parsed = chunk.parallelStream().map(line -> parse(line, parse)).toList();
+
+        var rows = new ArrayList<Row<T>>(parsed.size());
+        for (var row : parsed) {
+            totals.received++;
+            if (row.error() != null) {
+                totals.reject(row.line(), row.error());
+            } else {
+                rows.add(new Row<>(row.line(), row.value()));
+            }
+        }
+        if (!rows.isEmpty()) {
+            loader.load(rows, totals);
+        }
+    }
+
+    private static <T> Parsed<T> parse(final Line line, final Function<String, T> parse) {
+        try {
+            return new Parsed<>(line.number(), parse.apply(line.text()), null);
+        } catch (IllegalArgumentException e) {
+            return new Parsed<>(line.number(), null, e.getMessage());
+        }
+    }
+
+    private static <T> Function<String, T> csvParser(final String header, final RowParser<T> parser) {
+        List<String> columns;
+        try {
+            columns = CsvLine.split(header).stream()
+                    .map(column -> column == null ? "" : column.trim().toLowerCase())
+                    .toList();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidImportException("CSV header is not valid: " + e.getMessage());
+        }
+        if (!columns.containsAll(parser.requiredColumns())) {
+            throw new InvalidImportException("CSV header must name the columns " + parser.requiredColumns());
+        }
+
+        return text -> {
+            var values = CsvLine.split(text);
+            if (values.size() != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.size());
+            }
+            var row = new HashMap<String, String>();
+            for (int x = 0; x < columns.size(); x++) {
+                row.put(columns.get(x), values.get(x));
+            }
+            return parser.fromCsv(row);
+        };
+    }
+
+    /**
+     * Parsing and validation of the rows of one kind, a row is rejected by throwing an {@link IllegalArgumentException}
+     * with the reason. Called in parallel.
+     */
+    public interface RowParser<T> {
+
+        /**
+         * Columns the CSV header must name, in lower case.
+         */
+        Set<String> requiredColumns();
+
+        /**
+         * Row from the values of a CSV line by column name, in lower case.
+         */
+        T fromCsv(Map<String, String> values);
+
+        /**
+         * Row from an NDJSON line.
+         */
+        T fromJson(String line);
+    }
+
+    /**
+     * Loads a chunk of valid rows, in the order of the file, counting them in the totals.
+     */
+    @FunctionalInterface
+    public interface ChunkLoader<T> {
+
+        void load(List<Row<T>> rows, Totals totals);
+    }
+
+    /**
+     * @param tableSql creates the temporary staging table, dropped on commit
+     * @param copySql  COPY of CSV from STDIN into the staging table
+     * @param loadSql  moves the staged rows to their tables
+     */
+    public record Staging(String tableSql, String copySql, String loadSql) {
+    }
+
+    /**
+     * Valid row at the given line of the file.
+     */
+    public record Row<T>(long line, T value) {
+    }
+
+    public static class Totals {
+        private final List<ImportRejection> rejections = new ArrayList<>();
+        private final int maxReported;
+        private final long startedAt = System.nanoTime();
+        private long received;
+        private long imported;
+        private long rejected;
+        private long durationMs;
+
+        private Totals(final int maxReported) {
+            this.maxReported = maxReported;
+        }
+
+        public void reject(final long line, final String reason) {
+            rejected++;
+            if (rejections.size() < maxReported) {
+                rejections.add(new ImportRejection(line, reason));
+            }
+        }
+
+        public void imported(final long count) {
+            imported += count;
+        }
+
+        public long received() {
+            return received;
+        }
+
+        public long imported() {
+            return imported;
+        }
+
+        public long rejected() {
+            return rejected;
+        }
+
+        public List<ImportRejection> rejections() {
+            return rejections;
+        }
+
+        public long durationMs() {
+            return durationMs;
+        }
+
+        public double rowsPerSecond() {
+            return durationMs == 0 ? received : received * 1000.0 / durationMs;
+        }
+    }
+
+    private record Line(long number, String text) {
+    }
+
+    private record Parsed<T>(long line, T value, String error) {
+    }
+}
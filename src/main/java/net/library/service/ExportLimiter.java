@@ -0,0 +1,90 @@
+package net.library.service;
+
+import net.library.exception.TooManyExportsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the streamed exports running at once to {@code library.export.max-concurrent}: each of them holds a
+ * connection and a server-side cursor for as long as the client reads, so further exports are refused with 503
+ * instead of draining the pool.
+ * <p>
+ * Registered as an interceptor of async requests, it gives the requests which took a permit the
+ * {@code library.export.timeout} instead of the default async timeout, and releases the permit when the response
+ * completes, times out or fails, whichever comes first with the end of streaming.
+ */
+@Component
+public class ExportLimiter implements CallableProcessingInterceptor {
+    private static final String PERMIT_ATTRIBUTE = ExportLimiter.class.getName() + ".PERMIT";
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final Duration timeout;
+
+    public ExportLimiter(@Value("${library.export.max-concurrent:4}") final int maxConcurrent,
+                         @Value("${library.export.timeout:PT1H}") final Duration timeout) {
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Takes a permit for the export of the current request, without waiting.
+     *
+     * @throws TooManyExportsException when all permits are taken
+     */
+    public Permit acquire() {
+        if (!permits.tryAcquire()) {
+            throw new TooManyExportsException("All " + maxConcurrent + " exports are taken, retry later");
+        }
+        var permit = new Permit();
+        RequestContextHolder.currentRequestAttributes().setAttribute(PERMIT_ATTRIBUTE, permit, RequestAttributes.SCOPE_REQUEST);
+        return permit;
+    }
+
+    @Override
+    public <T> void beforeConcurrentHandling(final NativeWebRequest request, final Callable<T> task) {
+        if (permit(request) != null && request instanceof AsyncWebRequest asyncRequest) {
+            asyncRequest.setTimeout(timeout.toMillis());
+        }
+    }
+
+    @Override
+    public <T> void afterCompletion(final NativeWebRequest request, final Callable<T> task) {
+        var permit = permit(request);
+        if (permit != null) {
+            permit.close();
+        }
+    }
+
+    private static Permit permit(final NativeWebRequest request) {
+        return (Permit) request.getAttribute(PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Place of one export, released once however many times it is closed.
+     */
+    public final class Permit implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package net.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import net.library.exception.IdempotencyKeyInProgressException;
+import net.library.exception.IdempotencyKeyMisuseException;
+import net.library.util.Utils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Support of the 'Idempotency-Key' header: the first request with a key is executed and its successful response
+ * is stored, retries with the same key get the stored response without executing the request again.
+ * <p>
+ * Responses are kept in a bounded in-memory cache in front of the 'IDEMPOTENCY_KEYS' table, which survives restarts
+ * and is shared between instances. A key is claimed in the table before the request is executed, so a retry
+ * arriving while the first request is still running is rejected instead of executed twice. When the request fails,
+ * the key is released and the retry is executed normally. Keys expire after {@code library.idempotency.ttl}.
+ * <p>
+ * A claim is a lease of {@code library.idempotency.lease}: when the instance executing the request dies before
+ * storing the response or releasing the key, a retry after the lease reclaims the key and is executed. The lease
+ * must outlast the slowest request, a request running longer may be executed twice. Every claim is identified by
+ * its 'CREATED_AT', so a request outliving its lease does not overwrite or release the claim of the retry.
+ */
+@Slf4j
+@Component
+public class IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 200;
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at, expires_at, lease_until)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (idempotency_key) DO UPDATE
+            SET fingerprint = EXCLUDED.fingerprint,
+                status_code = NULL,
+                response_body = NULL,
+                created_at = EXCLUDED.created_at,
+                expires_at = EXCLUDED.expires_at,
+                lease_until = EXCLUDED.lease_until
+            WHERE idempotency_keys.expires_at < EXCLUDED.created_at
+               OR (idempotency_keys.status_code IS NULL AND idempotency_keys.lease_until < EXCLUDED.created_at)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Cache<String, StoredResponse> cache;
+    private final Counter cacheHits;
+    private final Counter storeHits;
+    private final Counter misses;
+
+    public IdempotencyService(final JdbcTemplate jdbcTemplate,
+                              final ObjectMapper objectMapper,
+                              final MeterRegistry meterRegistry,
+                              @Value("${library.idempotency.ttl:PT24H}") final Duration ttl,
+                              @Value("${library.idempotency.lease:PT1M}") final Duration lease,
+                              @Value("${library.idempotency.cache-size:10000}") final long cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.lease = lease;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "idempotency");
+        this.cacheHits = Counter.builder("library.idempotency.requests").tag("result", "cache_hit").register(meterRegistry);
+        this.storeHits = Counter.builder("library.idempotency.requests").tag("result", "store_hit").register(meterRegistry);
+        this.misses = Counter.builder("library.idempotency.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Executes the action once per key, see the class description.
+     *
+     * @param key         value of the 'Idempotency-Key' header, the action is executed as is when null
+     * @param fingerprint request the key is used with, a key may not be reused with another request
+     * @param bodyType    type of the response body, {@link Void} for responses without body
+     */
+    public <T> ResponseEntity<T> execute(final String key, final String fingerprint, final Class<T> bodyType,
+                                         final Supplier<ResponseEntity<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyKeyMisuseException("Idempotency key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        var cached = cache.getIfPresent(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return replay(key, cached, fingerprint, bodyType);
+        }
+
+        var claimedAt = Timestamp.valueOf(Utils.currentDate());
+        var claimed = jdbcTemplate.update(CLAIM_SQL, key, fingerprint, claimedAt,
+                Timestamp.valueOf(claimedAt.toLocalDateTime().plus(ttl)),
+                Timestamp.valueOf(claimedAt.toLocalDateTime().plus(lease))) > 0;
+        if (!claimed) {
+            var stored = find(key);
+            if (stored == null || stored.statusCode() == null) {
+                if (stored != null && !stored.fingerprint().equals(fingerprint)) {
+                    throw new IdempotencyKeyMisuseException("Idempotency key " + key + " is used with another request");
+                }
+                throw new IdempotencyKeyInProgressException("Request with idempotency key " + key + " is in progress");
+            }
+            storeHits.increment();
+            cache.put(key, stored);
+            return replay(key, stored, fingerprint, bodyType);
+        }
+
+        misses.increment();
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND created_at = ? AND status_code IS NULL",
+                    key, claimedAt);
+            throw e;
+        }
+
+        var stored = new StoredResponse(fingerprint, response.getStatusCode().value(), serialize(response.getBody()));
+        cache.put(key, stored);
+        try {
+            jdbcTemplate.update("""
+                            UPDATE idempotency_keys
+                            SET status_code = ?, response_body = ?, lease_until = NULL
+                            WHERE idempotency_key = ? AND created_at = ?
+                            """,
+                    stored.statusCode(), stored.body(), key, claimedAt);
+        } catch (RuntimeException e) {
+            log.error("Failed to store response of idempotency key [key={}]", key, e);
+        }
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${library.idempotency.cleanup-interval:PT1H}")
+    public void removeExpired() {
+        var removed = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?",
+                Timestamp.valueOf(Utils.currentDate()));
+        log.debug("Expired idempotency keys removed [count={}]", removed);
+    }
+
+    private StoredResponse find(final String key) {
+        return jdbcTemplate.query("""
+                        SELECT fingerprint, status_code, response_body
+                        FROM idempotency_keys
+                        WHERE idempotency_key = ?
+                        """,
+                (rs, rowNum) -> new StoredResponse(rs.getString("fingerprint"), (Integer) rs.getObject("status_code"),
+                        rs.getString("response_body")),
+                key).stream().findFirst().orElse(null);
+    }
+
+    private <T> ResponseEntity<T> replay(final String key, final StoredResponse stored, final String fingerprint,
+                                         final Class<T> bodyType) {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyMisuseException("Idempotency key " + key + " is used with another request");
+        }
+        try {
+            var body = stored.body() == null ? null : objectMapper.readValue(stored.body(), bodyType);
+            return ResponseEntity.status(stored.statusCode()).body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response of idempotency key " + key + " is not readable", e);
+        }
+    }
+
+    private String serialize(final Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Response is not serializable", e);
+        }
+    }
+
+    private record StoredResponse(String fingerprint, Integer statusCode, String body) {
+    }
+}
@@ -0,0 +1,125 @@
+package net.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.persistence.EntityManager;
+import net.library.model.request.CountMode;
+import net.library.model.response.KeysetPage;
+import net.library.repository.KeysetSpecification;
+import net.library.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Offset pages whose total is computed per {@link CountMode} instead of always running count(*)
+ * next to the page query, as {@code findAll(Specification, Pageable)} does, and ids of keyset pages.
+ * <p>
+ * Estimates of unfiltered tables come from planner statistics ('PG_CLASS.RELTUPLES', kept by autovacuum),
+ * estimates of filtered pages are exact counts cached per table and filters for {@code library.paging.count-cache-ttl}.
+ */
+@Component
+public class PageQueryExecutor {
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<String, Long> counts;
+
+    public PageQueryExecutor(final EntityManager entityManager,
+                             final JdbcTemplate jdbcTemplate,
+                             final MeterRegistry meterRegistry,
+                             @Value("${library.paging.count-cache-ttl:PT1M}") final Duration countCacheTtl,
+                             @Value("${library.paging.count-cache-size:1000}") final long countCacheSize) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(countCacheSize)
+                .expireAfterWrite(countCacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "page_counts");
+    }
+
+    /**
+     * Ids of the rows of the page only, without the count query. Pages of entities are read with the fluent
+     * {@code findBy(specification, query -> query.slice(pageable))} of their repository instead.
+     */
+    public <T> List<UUID> findIds(final Class<T> type, final Specification<T> specification, final Pageable pageable) {
+        var criteriaBuilder = entityManager.getCriteriaBuilder();
+        var query = criteriaBuilder.createQuery(UUID.class);
+        var root = query.from(type);
+        query.select(root.get("id"));
+
+        var predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+
+        return entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    /**
+     * Ids of the rows after the cursor and the cursor of the next page, reading only 'createdAt, id' of the rows,
+     * so a page can be tagged before its content is loaded.
+     *
+     * @param specification filters of the page, null for none
+     */
+    public <T> KeysetPage<UUID> findIdsAfter(final Class<T> type, final Specification<T> specification,
+                                             final KeysetCursor cursor, final int size) {
+        var criteriaBuilder = entityManager.getCriteriaBuilder();
+        var query = criteriaBuilder.createTupleQuery();
+        var root = query.from(type);
+        query.multiselect(root.get("createdAt"), root.get("id"));
+
+        Specification<T> keyset = KeysetSpecification.after(cursor);
+        var filters = specification == null ? keyset : specification.and(keyset);
+        query.where(filters.toPredicate(root, query, criteriaBuilder));
+        query.orderBy(QueryUtils.toOrders(cursor.sort(), root, criteriaBuilder));
+
+        var rows = entityManager.createQuery(query)
+                .setMaxResults(size + 1)
+                .getResultList();
+        return new KeysetPage<>(
+                rows.stream().limit(size).map(row -> row.get(1, UUID.class)).toList(),
+                cursor.next(rows, size, row -> row.get(0, LocalDateTime.class), row -> row.get(1, UUID.class)));
+    }
+
+    /**
+     * @param table      table the page is read from, used for planner statistics
+     * @param filters    filter values of the page, all null (or blank) for an unfiltered page
+     * @param exactCount count(*) with the filters of the page
+     */
+    public Long total(final CountMode countMode, final String table, final List<?> filters, final LongSupplier exactCount) {
+        return switch (countMode) {
+            case EXACT -> exactCount.getAsLong();
+            case NONE -> null;
+            case ESTIMATE -> estimate(table, filters, exactCount);
+        };
+    }
+
+    private long estimate(final String table, final List<?> filters, final LongSupplier exactCount) {
+        if (filters.stream().allMatch(filter -> filter == null || filter.toString().isBlank())) {
+            var reltuples = jdbcTemplate.queryForObject("SELECT reltuples FROM pg_class WHERE oid = CAST(? AS regclass)",
+                    Double.class, table);
+            // -1 until the table is vacuumed or analyzed for the first time
+            if (reltuples != null && reltuples >= 0) {
+                return Math.round(reltuples);
+            }
+        }
+        return counts.get(table + filters, key -> exactCount.getAsLong());
+    }
+}
@@ -0,0 +1,143 @@
+package net.library.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import net.library.exception.NotFoundException;
+import net.library.model.entity.User;
+import net.library.model.request.UserBulkUpdateRequest;
+import net.library.model.response.BulkUpdateJob;
+import net.library.repository.KeysetSpecification;
+import net.library.repository.UserRepository;
+import net.library.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk update of the states and role of all users matching a filter, run in the background.
+ * <p>
+ * Users are walked in the keyset order 'createdAt, id' (see {@link KeysetSpecification}), at most
+ * {@code library.bulk-update.chunk-size} per transaction. Every chunk seeks the '(FILTER, CREATED_AT, ID)' index
+ * from the cursor left by the previous one, so a chunk reads only its own rows and not the users updated before
+ * it, which may still match the filter (e.g. a role kept by the update). Every chunk is one set-based UPDATE of the ids read,
+ * committed before the next chunk is read, so locks are held briefly and a failure keeps the chunks committed
+ * before it. Progress is kept for {@code library.bulk-update.retention} after the job finishes.
+ */
+@Slf4j
+@Component
+public class UserBulkUpdater {
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Cache<UUID, Job> jobs;
+
+    public UserBulkUpdater(final UserRepository userRepository,
+                           final PlatformTransactionManager transactionManager,
+                           @Value("${library.bulk-update.chunk-size:1000}") final int chunkSize,
+                           @Value("${library.bulk-update.retention:PT24H}") final Duration retention) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    public BulkUpdateJob start(final Specification<User> specification, final UserBulkUpdateRequest request) {
+        var job = new Job(UUID.randomUUID(), userRepository.count(specification), LocalDateTime.now());
+        jobs.put(job.id, job);
+        Thread.ofVirtual().name("user-bulk-update-" + job.id).start(() -> run(job, specification, request));
+        return job.snapshot();
+    }
+
+    public BulkUpdateJob get(final UUID jobId) {
+        var job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            throw new NotFoundException("Bulk update " + jobId + " not found");
+        }
+        return job.snapshot();
+    }
+
+    private void run(final Job job, final Specification<User> specification, final UserBulkUpdateRequest request) {
+        log.info("Bulk update of users started [jobId={}, matched={}, request={}]", job.id, job.matched, request);
+        try {
+            var cursor = KeysetCursor.decode(null, Sort.Direction.ASC);
+            while (cursor != null) {
+                cursor = updateChunk(job, specification.and(KeysetSpecification.after(cursor)), cursor.sort(), request);
+            }
+            job.finish(BulkUpdateJob.Status.COMPLETED, null);
+            log.info("Bulk update of users completed [jobId={}, updated={}, chunks={}]", job.id, job.updated.get(),
+                    job.chunks.get());
+        } catch (RuntimeException e) {
+            job.finish(BulkUpdateJob.Status.FAILED, e.getMessage());
+            log.error("Bulk update of users failed [jobId={}, updated={}]", job.id, job.updated.get(), e);
+        }
+        // keeps the finished job for the whole retention
+        jobs.put(job.id, job);
+    }
+
+    /**
+     * Updates the next chunk in its own transaction, returns the cursor after it or null when no user is left.
+     */
+    private KeysetCursor updateChunk(final Job job, final Specification<User> specification, final Sort sort,
+                                     final UserBulkUpdateRequest request) {
+        return transactionTemplate.execute(status -> {
+            var users = userRepository.findBy(specification, query -> query.sortBy(sort).limit(chunkSize).all());
+            if (users.isEmpty()) {
+                return null;
+            }
+            var updated = userRepository.updateAll(users.stream().map(User::getId).toList(),
+                    request.getModerationState(), request.getUserState(), request.getRoleType());
+            job.updated.addAndGet(updated);
+            job.chunks.incrementAndGet();
+
+            var last = users.getLast();
+            return new KeysetCursor(Sort.Direction.ASC, last.getCreatedAt(), last.getId());
+        });
+    }
+
+    private static final class Job {
+        private final UUID id;
+        private final long matched;
+        private final LocalDateTime startedAt;
+        private final AtomicLong updated = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private volatile BulkUpdateJob.Status status = BulkUpdateJob.Status.RUNNING;
+        private volatile String error;
+        private volatile LocalDateTime finishedAt;
+
+        private Job(final UUID id, final long matched, final LocalDateTime startedAt) {
+            this.id = id;
+            this.matched = matched;
+            this.startedAt = startedAt;
+        }
+
+        void finish(final BulkUpdateJob.Status status, final String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.status = status;
+        }
+
+        BulkUpdateJob snapshot() {
+            return BulkUpdateJob.builder()
+                    .jobId(id)
+                    .status(status)
+                    .matched(matched)
+                    .updated(updated.get())
+                    .chunks(chunks.get())
+                    .error(error)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.library.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.library.model.mapper.UserMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Export of all users as NDJSON (one {@link net.library.model.dto.UserDto} per line) in constant memory:
+ * users come from {@link UserService#streamAll} and every user is written to the response before the next
+ * batch is fetched from the cursor.
+ */
+@Slf4j
+@Component
+public class UserExporter {
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    public UserExporter(final UserService userService, final ObjectMapper objectMapper) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+    }
+
+    public void export(final OutputStream outputStream) {
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        var rows = new AtomicLong();
+
+        userService.streamAll(users -> {
+            users.map(UserMapper::toDto).forEach(user -> {
+                write(writer, user);
+                rows.incrementAndGet();
+            });
+            return null;
+        });
+
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Users exported [rows={}]", rows.get());
+    }
+
+    private void write(final Writer writer, final Object value) {
+        try {
+            writer.write(objectMapper.writeValueAsString(value));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
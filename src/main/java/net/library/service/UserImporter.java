@@ -0,0 +1,177 @@
+package net.library.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.library.converter.UserConverter;
+import net.library.model.entity.User;
+import net.library.model.request.DataFormat;
+import net.library.model.request.UserRequest;
+import net.library.model.response.UserImportReport;
+import net.library.util.CsvLine;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk registration of users from CSV or NDJSON with the fields of {@link UserRequest}; CSV files start with
+ * a header naming the columns (e.g. 'username,name,surname,email,phoneNumber,address').
+ * <p>
+ * Chunks of the file are parsed, validated with the constraints of {@link UserRequest} and staged by
+ * {@link CopyImportPipeline}, then inserted into 'USERS' by one set-based statement per chunk.
+ * A username repeating an earlier row of the chunk, or already taken by a stored user, rejects the row:
+ * unlike a repeated book it is another member whose username clashes. Repeats within the chunk are found by
+ * 'DISTINCT ON' of the load, taken usernames by 'ON CONFLICT (USERNAME) DO NOTHING' of the insert, which also
+ * covers users registered meanwhile and usernames imported by an earlier chunk. Nothing is remembered between
+ * chunks, so the memory of an import does not grow with the file.
+ */
+@Slf4j
+@Component
+public class UserImporter {
+    private static final String STAGING_SQL = """
+            CREATE TEMP TABLE user_import
+            (
+                line         BIGINT,
+                username     VARCHAR(200),
+                name         VARCHAR(200),
+                surname      VARCHAR(200),
+                email        VARCHAR(100),
+                phone_number VARCHAR(15),
+                address      VARCHAR(300)
+            ) ON COMMIT DROP
+            """;
+    private static final String COPY_SQL = """
+            COPY user_import (line, username, name, surname, email, phone_number, address)
+            FROM STDIN WITH (FORMAT csv)
+            """;
+    private static final String LOAD_SQL = """
+            WITH firsts AS (
+                SELECT DISTINCT ON (username) line, username, name, surname, email, phone_number, address
+                FROM user_import
+                ORDER BY username, line
+            ), inserted AS (
+                INSERT INTO users (username, name, surname, email, phone_number, address)
+                SELECT username, name, surname, email, phone_number, address
+                FROM firsts
+                ORDER BY line
+                ON CONFLICT (username) DO NOTHING
+                RETURNING username
+            )
+            SELECT s.line, f.line AS first_line
+            FROM user_import s
+            LEFT JOIN firsts f ON f.username = s.username AND f.line <> s.line
+            WHERE f.line IS NOT NULL
+               OR NOT EXISTS (SELECT 1 FROM inserted i WHERE i.username = s.username)
+            ORDER BY s.line
+            """;
+    private static final CopyImportPipeline.Staging STAGING = new CopyImportPipeline.Staging(STAGING_SQL, COPY_SQL, LOAD_SQL);
+    private static final Set<String> REQUIRED_COLUMNS = Set.of("username", "name", "surname", "email", "phonenumber");
+    // sizes of the columns of 'USERS', longer values would fail the COPY of the whole chunk
+    private static final Map<String, Integer> MAX_LENGTHS = Map.of("username", 200, "name", 200, "surname", 200,
+            "email", 100, "address", 300);
+
+    private final CopyImportPipeline pipeline;
+    private final ObjectMapper objectMapper;
+
+    public UserImporter(final CopyImportPipeline pipeline, final ObjectMapper objectMapper) {
+        this.pipeline = pipeline;
+        this.objectMapper = objectMapper;
+    }
+
+    public UserImportReport importUsers(final DataFormat format, final InputStream inputStream) {
+        var totals = pipeline.run(format, inputStream, new UserParser(), this::load);
+
+        log.info("Users imported [format={}, received={}, imported={}, rejected={}, rowsPerSecond={}]",
+                format, totals.received(), totals.imported(), totals.rejected(), Math.round(totals.rowsPerSecond()));
+
+        return UserImportReport.builder()
+                .received(totals.received())
+                .imported(totals.imported())
+                .rejected(totals.rejected())
+                .rejections(totals.rejections())
+                .durationMs(totals.durationMs())
+                .rowsPerSecond(totals.rowsPerSecond())
+                .build();
+    }
+
+    private void load(final List<CopyImportPipeline.Row<User>> rows, final CopyImportPipeline.Totals totals) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        var staging = new StringBuilder();
+        for (var row : rows) {
+            var user = row.value();
+            staging.append(CsvLine.join(row.line(), user.getUsername(), user.getName(), user.getSurname(), user.getEmail(),
+                    user.getPhoneNumber(), user.getAddress())).append('\n');
+        }
+
+        var refused = pipeline.load(STAGING, staging, (rs, rowNum) -> new Refused(rs.getLong("line"),
+                rs.getObject("first_line", Long.class)));
+        totals.imported(rows.size() - refused.size());
+        refused.forEach(row -> totals.reject(row.line(), row.firstLine() == null
+                ? "username: already exists"
+                : "username: repeats line " + row.firstLine()));
+    }
+
+    private static int length(final User user, final String column) {
+        var value = switch (column) {
+            case "username" -> user.getUsername();
+            case "name" -> user.getName();
+            case "surname" -> user.getSurname();
+            case "email" -> user.getEmail();
+            default -> user.getAddress();
+        };
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Staged row which was not inserted, 'firstLine' is the line of the chunk it repeats, null for a taken username.
+     */
+    private record Refused(long line, Long firstLine) {
+    }
+
+    private final class UserParser implements CopyImportPipeline.RowParser<User> {
+
+        @Override
+        public Set<String> requiredColumns() {
+            return REQUIRED_COLUMNS;
+        }
+
+        @Override
+        public User fromCsv(final Map<String, String> values) {
+            return validate(new UserRequest(values.get("username"), values.get("name"), values.get("surname"),
+                    values.get("email"), values.get("phonenumber"), values.get("address")));
+        }
+
+        @Override
+        public User fromJson(final String line) {
+            try {
+                return validate(objectMapper.readValue(line, UserRequest.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Not a JSON object of a user: " + e.getOriginalMessage());
+            }
+        }
+
+        /**
+         * Constraints of {@link UserRequest}, as checked for 'POST /users', the phone number by {@link
+         * net.library.service.validator.UserValidationService}; the user is built by {@link UserConverter} as well.
+         */
+        private User validate(final UserRequest request) {
+            pipeline.validate(request);
+            var user = UserConverter.of(request);
+            var tooLong = MAX_LENGTHS.entrySet().stream()
+                    .filter(column -> length(user, column.getKey()) > column.getValue())
+                    .map(column -> column.getKey() + ": must be at most " + column.getValue() + " characters")
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            if (!tooLong.isEmpty()) {
+                throw new IllegalArgumentException(tooLong);
+            }
+            return user;
+        }
+    }
+}
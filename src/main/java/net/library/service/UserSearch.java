@@ -0,0 +1,62 @@
+package net.library.service;
+
+import net.library.model.request.CountMode;
+import net.library.model.request.UserSearchMode;
+import net.library.model.response.CountedPage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Search of users by username, name, surname and email, served by the 'IDX_USERS_TRGM' trigram (pg_trgm) GIN index
+ * in every mode, so neither substring patterns nor typos fall back to a sequential scan.
+ * Results are ordered by the best trigram similarity of the four columns to the query.
+ */
+@Component
+public class UserSearch {
+    private static final String COLUMNS_MATCH = "u.username %1$s OR u.name %1$s OR u.surname %1$s OR u.email %1$s";
+    private static final String RANK = """
+            GREATEST(similarity(u.username, :query), similarity(u.name, :query),
+                     similarity(u.surname, :query), similarity(u.email, :query))""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PageQueryExecutor pageQueryExecutor;
+
+    public UserSearch(final NamedParameterJdbcTemplate jdbcTemplate, final PageQueryExecutor pageQueryExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pageQueryExecutor = pageQueryExecutor;
+    }
+
+    /**
+     * Ids of the matching users, most similar first.
+     */
+    public CountedPage<UUID> findIds(final String query, final UserSearchMode mode, final Pageable pageable,
+                                     final CountMode countMode) {
+        var params = new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("pattern", switch (mode) {
+                    case SUBSTRING -> "%" + escapeLike(query) + "%";
+                    case PREFIX -> escapeLike(query) + "%";
+                    case FUZZY -> null;
+                })
+                .addValue("limit", pageable.getPageSize())
+                .addValue("offset", pageable.getOffset());
+
+        var from = "FROM users u WHERE " + COLUMNS_MATCH.formatted(mode == UserSearchMode.FUZZY ? "% :query" : "ILIKE :pattern");
+        // concatenated, the '%' operator of fuzzy matching would be taken for a format specifier
+        var ids = jdbcTemplate.queryForList("SELECT u.id " + from + " ORDER BY " + RANK + " DESC, u.id LIMIT :limit OFFSET :offset",
+                params, UUID.class);
+
+        var total = pageQueryExecutor.total(countMode, "users", List.of(mode, query),
+                () -> jdbcTemplate.queryForObject("SELECT COUNT(*) " + from, params, Long.class));
+        return new CountedPage<>(ids, total);
+    }
+
+    private static String escapeLike(final String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,28 +1,43 @@
 package net.library.service;
 
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.library.converter.UserConverter;
 import net.library.exception.NotFoundException;
+import net.library.exception.WrongState;
 import net.library.model.dto.UserDto;
 import net.library.model.entity.User;
 import net.library.model.mapper.UserMapper;
+import net.library.model.request.CountMode;
+import net.library.model.request.UserBulkUpdateRequest;
 import net.library.model.request.UserRequest;
+import net.library.model.request.UserSearchMode;
+import net.library.model.response.BulkUpdateJob;
+import net.library.model.response.CountedPage;
+import net.library.model.response.KeysetPage;
+import net.library.repository.KeysetSpecification;
 import net.library.repository.UserRepository;
 import net.library.repository.UserSpecification;
 import net.library.repository.enums.ModerationState;
 import net.library.repository.enums.RoleType;
 import net.library.repository.enums.UserState;
 import net.library.service.validator.UserValidationService;
+import net.library.util.KeysetCursor;
 import net.library.util.Utils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static net.library.util.Utils.stringToLocalDateConverter;
 
@@ -32,12 +47,90 @@ import static net.library.util.Utils.stringToLocalDateConverter;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final PageQueryExecutor pageQueryExecutor;
+    private final UserSearch userSearch;
+    private final EntityManager entityManager;
+    private final UserBulkUpdater bulkUpdater;
+
+    /**
+     * All users, streamed from a database cursor instead of loaded as a list. The stream is open only while
+     * 'reader' runs, inside a read-only transaction, and users are detached as they are read, so memory stays
+     * constant however many users there are.
+     */
+    @Transactional(readOnly = true)
+    public <R> R streamAll(Function<Stream<User>, R> reader) {
+        try (var users = userRepository.streamAll()) {
+            return reader.apply(users.peek(entityManager::detach));
+        }
+    }
+
+    /**
+     * Users matching the filters, with 'total' computed per {@link CountMode}.
+     */
+    public CountedPage<UserDto> getAllByFilter(String startDate, String endDate, String userName, String moderationState, String userState, String roleType,
+                                               Pageable pageable, CountMode countMode) {
+        var specification = filterSpecification(startDate, endDate, userName, moderationState, userState, roleType);
+        if (countMode == CountMode.EXACT) {
+            var userPage = userRepository.findAll(specification, pageable);
+            return new CountedPage<>(userPage.map(UserMapper::toDto).getContent(), userPage.getTotalElements());
+        }
+
+        var users = userRepository.findBy(specification, query -> query.slice(pageable)).stream()
+                .map(UserMapper::toDto)
+                .toList();
+        var total = pageQueryExecutor.total(countMode, "users",
+                Arrays.asList(startDate, endDate, userName, moderationState, userState, roleType),
+                () -> userRepository.count(specification));
+        return new CountedPage<>(users, total);
+    }
+
+    /**
+     * Same filters as {@link #getAllByFilter}, paged by the keyset 'createdAt, id' instead of an offset.
+     */
+    public KeysetPage<UserDto> getAllByFilterAfter(String startDate, String endDate, String userName, String moderationState, String userState, String roleType,
+                                                   KeysetCursor cursor, int size) {
+        var specification = filterSpecification(startDate, endDate, userName, moderationState, userState, roleType)
+                .and(KeysetSpecification.after(cursor));
+
+        var users = userRepository.findBy(specification, query -> query.sortBy(cursor.sort()).limit(size + 1).all());
+        return new KeysetPage<>(
+                users.stream().limit(size).map(UserMapper::toDto).toList(),
+                cursor.next(users, size, User::getCreatedAt, User::getId));
+    }
 
-    public List<User> getAllUsers() {
-        return userRepository.findAll().stream().toList();
+    /**
+     * Search by username, name, surname and email, see {@link UserSearch}.
+     */
+    public CountedPage<UserDto> search(String query, UserSearchMode mode, Pageable pageable, CountMode countMode) {
+        UserValidationService.isLength(query, 3);
+        var ids = userSearch.findIds(query, mode, pageable, countMode);
+        var usersById = userRepository.findAllById(ids.items()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        var users = ids.items().stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
+                .map(UserMapper::toDto)
+                .toList();
+        return new CountedPage<>(users, ids.total());
     }
 
-    public Page<UserDto> getAllByFilter(String startDate, String endDate, String userName, String moderationState, String userState, String roleType, Pageable pageable) {
+    /**
+     * Starts a background update of all users matching the filters of {@link #getAllByFilter}, see {@link UserBulkUpdater}.
+     */
+    public BulkUpdateJob bulkUpdate(String startDate, String endDate, String userName, String moderationState, String userState, String roleType,
+                                    UserBulkUpdateRequest request) {
+        if (request.getModerationState() == null && request.getUserState() == null && request.getRoleType() == null) {
+            throw new WrongState("Bulk update sets neither moderation state, user state nor role");
+        }
+        var specification = filterSpecification(startDate, endDate, userName, moderationState, userState, roleType);
+        return bulkUpdater.start(specification, request);
+    }
+
+    public BulkUpdateJob getBulkUpdate(UUID jobId) {
+        return bulkUpdater.get(jobId);
+    }
+
+    private Specification<User> filterSpecification(String startDate, String endDate, String userName, String moderationState, String userState, String roleType) {
         log.info("Filtering with username: {}, startDate: {}, endDate: {}", userName, startDate, endDate);
 
         UserValidationService.isLength(userName, 3);
@@ -47,11 +140,7 @@ public class UserService {
         var moderationStateConverted = Utils.convertToEnum(moderationState, ModerationState.class);
         var userStateConverted = Utils.convertToEnum(userState, UserState.class);
         var roleTypeConverted = Utils.convertToEnum(roleType, RoleType.class);
-        var specification = UserSpecification.filterByParam(userName, moderationStateConverted, userStateConverted, roleTypeConverted, startDateConverted, endDateConverted);
-
-        var userPage = userRepository
-                .findAll(specification, pageable);
-        return userPage.map(UserMapper::toDto);
+        return UserSpecification.filterByParam(userName, moderationStateConverted, userStateConverted, roleTypeConverted, startDateConverted, endDateConverted);
     }
 
     public Page<User> getAllUsersPagedSorted(Pageable pageable) {
@@ -81,10 +170,6 @@ public class UserService {
         }
     }
 
-    public List<User> findAll() {
-        return userRepository.findAll().stream().toList();
-    }
-
     @Transactional
     public void updateModerationState(UUID userId, ModerationState moderationState) {
         int result = userRepository.updateModerationState(userId, moderationState);
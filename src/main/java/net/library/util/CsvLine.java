@@ -0,0 +1,67 @@
+package net.library.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-line CSV (RFC 4180 quoting), as read by the imports and written for Postgres COPY.
+ * Values spanning several lines are not supported.
+ */
+public class CsvLine {
+
+    /**
+     * Splits the line into values, empty unquoted values are null.
+     *
+     * @throws IllegalArgumentException when a quoted value is not closed
+     */
+    public static List<String> split(final String line) {
+        var values = new ArrayList<String>();
+        var value = new StringBuilder();
+        var quoted = false;
+        var inQuotes = false;
+        for (int x = 0; x < line.length(); x++) {
+            var c = line.charAt(x);
+            if (inQuotes) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (x + 1 < line.length() && line.charAt(x + 1) == '"') {
+                    value.append('"');
+                    x++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                values.add(quoted || !value.isEmpty() ? value.toString() : null);
+                value.setLength(0);
+                quoted = false;
+            } else {
+                value.append(c);
+            }
+        }
+        if (inQuotes) {
+            throw new IllegalArgumentException("Quoted value is not closed");
+        }
+        values.add(quoted || !value.isEmpty() ? value.toString() : null);
+        return values;
+    }
+
+    /**
+     * Joins the values into a line which keeps null apart from an empty string: null is written as nothing,
+     * every other value is quoted.
+     */
+    public static String join(final Object... values) {
+        var line = new StringBuilder();
+        for (int x = 0; x < values.length; x++) {
+            if (x > 0) {
+                line.append(',');
+            }
+            if (values[x] != null) {
+                line.append('"').append(values[x].toString().replace("\"", "\"\"")).append('"');
+            }
+        }
+        return line.toString();
+    }
+}
@@ -8,6 +8,7 @@ public class HttpUtil {
     public static final String USERS = "users";
     public static final String URL_ALL = "/**";
     public static final String CORRELATION_ID_HEADER_NAME = "X-Correlation-Id";
+    public static final String IDEMPOTENCY_KEY_HEADER_NAME = "Idempotency-Key";
     public static final String ERROR_ID = "errorId";
     public static final String ERROR_MSG = "errorMsg";
     public static final String CID = "cid";
@@ -0,0 +1,63 @@
+package net.library.util;
+
+import net.library.exception.InvalidCursorException;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Position of keyset (cursor) pagination over the stable sort key 'createdAt, id'.
+ * Clients get it as an opaque string ('nextCursor' of {@link net.library.model.response.Page}) and send it back
+ * as the 'cursor' request param; an empty 'cursor' asks for the first page.
+ * The cursor carries the sort direction, so a scan keeps its order whatever 'order' is sent with later pages.
+ */
+public record KeysetCursor(Sort.Direction direction, LocalDateTime createdAt, UUID id) {
+    private static final String SEPARATOR = "|";
+
+    public static KeysetCursor decode(final String value, final Sort.Direction direction) {
+        if (value == null || value.isBlank()) {
+            return new KeysetCursor(direction, null, null);
+        }
+        try {
+            var parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3) {
+                throw new InvalidCursorException("Cursor has wrong format: " + value);
+            }
+            return new KeysetCursor(Sort.Direction.fromString(parts[0]), LocalDateTime.parse(parts[1]), UUID.fromString(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Cursor has wrong format: " + value);
+        }
+    }
+
+    public boolean isFirst() {
+        return createdAt == null;
+    }
+
+    public Sort sort() {
+        return Sort.by(direction, "createdAt", "id");
+    }
+
+    public String encode() {
+        var value = direction.name() + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cursor of the page following the given rows, which were fetched with a limit of one more than the page size;
+     * null when there is no next page.
+     */
+    public <T> String next(final List<T> rows, final int size, final Function<T, LocalDateTime> createdAt,
+                           final Function<T, UUID> id) {
+        if (rows.size() <= size) {
+            return null;
+        }
+        var last = rows.get(size - 1);
+        return new KeysetCursor(direction, createdAt.apply(last), id.apply(last)).encode();
+    }
+}
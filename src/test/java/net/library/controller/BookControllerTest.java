@@ -3,29 +3,44 @@ package net.library.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jayway.jsonpath.JsonPath;
 import net.library.model.entity.*;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.model.request.BookItemBatchEntry;
+import net.library.model.request.BookItemBatchRequest;
 import net.library.model.request.BookRequest;
 import net.library.repository.*;
 import net.library.repository.enums.BookAction;
 import net.library.repository.enums.BookItemStatus;
+import net.library.service.BookAvailabilityIndex;
 import net.library.service.BookService;
+import net.library.service.ExportLimiter;
 import net.library.util.Utils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static net.library.tools.Tools.*;
 import static net.library.util.HttpUtil.*;
@@ -40,6 +55,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @AutoConfigureMockMvc
 class BookControllerTest {
+    private static final Logger log = LoggerFactory.getLogger(BookControllerTest.class);
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
@@ -61,6 +77,12 @@ class BookControllerTest {
     private BookGenresRepository bookGenresRepository;
     @Autowired
     private BookItemHistoryRepository bookItemHistoryRepository;
+    @Autowired
+    private BookAvailabilityIndex availabilityIndex;
+    @Autowired
+    private ExportLimiter exportLimiter;
+    @Value("${library.export.max-concurrent}")
+    private int maxConcurrentExports;
 
     @AfterEach
     void cleanAfter() {
@@ -68,6 +90,66 @@ class BookControllerTest {
         userRepository.deleteAll();
     }
 
+    @Test
+    void getAllBooksByCursorWalksEveryBookOnceInBothOrders() throws Exception {
+        // ties on created_at are broken by id
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, publisher, edition, created_at)
+                SELECT 'Title ' || g, 'Author', 'Publisher', CAST(g AS text),
+                       TIMESTAMP '2025-01-01 10:00:00' + CASE WHEN g <= 5 THEN INTERVAL '0' ELSE g * INTERVAL '1 minute' END
+                FROM generate_series(1, 7) g
+                """);
+
+        for (var order : List.of("asc", "desc")) {
+            final var ids = walkByCursor(GLOBAL_BASE_URI + BOOKS + "/all", order, "id");
+            assertEquals(7, ids.size(), order);
+            assertEquals(7, new HashSet<>(ids).size(), order);
+        }
+    }
+
+    @Test
+    void getBookItemsByCursorWalksEveryItemOnceInBothOrders() throws Exception {
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")).getId();
+        jdbcTemplate.update("""
+                INSERT INTO book_items (book_id, created_at)
+                SELECT ?, TIMESTAMP '2025-01-01 10:00:00' + CASE WHEN g <= 5 THEN INTERVAL '0' ELSE g * INTERVAL '1 minute' END
+                FROM generate_series(1, 7) g
+                """, bookId);
+
+        for (var order : List.of("asc", "desc")) {
+            final var ids = walkByCursor(GLOBAL_BASE_URI + ITEMS, order, "bookItemId");
+            assertEquals(7, ids.size(), order);
+            assertEquals(7, new HashSet<>(ids).size(), order);
+        }
+    }
+
+    /**
+     * Ids of all pages of 2 items, following 'nextCursor' from the first page.
+     */
+    private List<String> walkByCursor(final String uri, final String order, final String idField) throws Exception {
+        final var ids = new ArrayList<String>();
+        var cursor = "";
+        var pages = 0;
+        do {
+            final var response = mvc.perform(MockMvcRequestBuilders.get(uri)
+                            .param("cursor", cursor)
+                            .param("order", order)
+                            .param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.total").doesNotExist())
+                    .andReturn().getResponse().getContentAsString();
+            final var page = objectMapper.readTree(response);
+            page.get("items").forEach(item -> ids.add(item.get(idField).asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null && pages < 10);
+        assertEquals(4, pages, uri + " " + order);
+        return ids;
+    }
+
     @Test
     void addBookSuccess() throws Exception {
         final var title = "The Great Gatsby";
@@ -1626,6 +1708,154 @@ class BookControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void borrowAnyBookItemExhaustedUntilReturned() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        final var bookItemId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isNotFound());
+
+        assertTrue(availabilityIndex.isExhausted(bookId));
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookItemId + "/return?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+
+        assertFalse(availabilityIndex.isExhausted(bookId));
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.bookItemId", is(bookItemId.toString())));
+    }
+
+    @Test
+    void availabilityIndexCountsOnlyChangesInAndOutOfAvailable() {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+
+        final var firstId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+        final var secondId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+        availabilityIndex.reconcile();
+
+        bookService.borrowActionBookItemById(firstId, user.getId(), BookItemStatus.IN_PROGRESS);
+        // the borrowed copy is written off: neither status is 'AVAILABLE', the second copy still is
+        availabilityIndex.onStatusChanged(new BookItemStatusChangedEvent(bookId, firstId, user.getId(),
+                BookItemStatus.REMOVED, false, BookAction.BORROWED, LocalDateTime.now()));
+
+        assertFalse(availabilityIndex.isExhausted(bookId));
+
+        // 'AVAILABLE' to 'AVAILABLE' leaves the count at one, the next borrow exhausts the book
+        bookService.borrowActionBookItemById(secondId, user.getId(), BookItemStatus.AVAILABLE);
+        bookService.borrowActionBookItemById(secondId, user.getId(), BookItemStatus.IN_PROGRESS);
+
+        assertTrue(availabilityIndex.isExhausted(bookId));
+    }
+
+    @Test
+    void borrowAndReturnBookItemsBatch() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        final var bookItemIdOne = bookItemRepository.save(new BookItem().setBookId(bookId)).getId();
+        final var bookItemIdTwo = bookItemRepository.save(new BookItem().setBookId(bookId)).getId();
+        final var unknownBookItemId = UUID.randomUUID();
+
+        final var borrowRequest = new BookItemBatchRequest(List.of(
+                new BookItemBatchEntry(bookItemIdOne, user.getId()),
+                new BookItemBatchEntry(bookItemIdTwo, user.getId()),
+                new BookItemBatchEntry(bookItemIdOne, user.getId()),
+                new BookItemBatchEntry(unknownBookItemId, user.getId()),
+                new BookItemBatchEntry(bookItemIdTwo, UUID.randomUUID())));
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/batch/borrowing")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(borrowRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].success", is(true)))
+                .andExpect(jsonPath("$[1].success", is(true)))
+                .andExpect(jsonPath("$[2].success", is(false)))
+                .andExpect(jsonPath("$[3].success", is(false)))
+                .andExpect(jsonPath("$[4].success", is(false)));
+
+        assertEquals(BookItemStatus.IN_PROGRESS, bookItemRepository.findById(bookItemIdOne).get().getStatus());
+        assertEquals(BookItemStatus.IN_PROGRESS, bookItemRepository.findById(bookItemIdTwo).get().getStatus());
+
+        final var returnRequest = new BookItemBatchRequest(List.of(
+                new BookItemBatchEntry(bookItemIdOne, user.getId()),
+                new BookItemBatchEntry(bookItemIdTwo, UUID.randomUUID())));
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/batch/return")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(returnRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookItemId", is(bookItemIdOne.toString())))
+                .andExpect(jsonPath("$[0].success", is(true)))
+                .andExpect(jsonPath("$[1].success", is(false)));
+
+        assertEquals(BookItemStatus.AVAILABLE, bookItemRepository.findById(bookItemIdOne).get().getStatus());
+        assertEquals(BookItemStatus.IN_PROGRESS, bookItemRepository.findById(bookItemIdTwo).get().getStatus());
+    }
+
+    @Test
+    void borrowBookItemsBatchEmpty() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/batch/borrowing")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new BookItemBatchRequest(List.of()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath(ERROR_ID, is(102)));
+    }
+
     @Test
     void borrowAnyBookItemInvalidUser() throws Exception {
 
@@ -1862,6 +2092,51 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.items[0].bookItems", hasSize(100)));
     }
 
+    @Test
+    void getAllBooksPagesBooksNotCopies() throws Exception {
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var gatsbyId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+        final var prideId = bookRepository.save(new Book()
+                .setTitle("Pride and Prejudice")
+                .setAuthor("Jane Austen")
+                .setPublisher("T. Egerton")
+                .setPublicationYear(1813)).getId();
+        bookRepository.save(new Book()
+                .setTitle("Animal Farm")
+                .setAuthor("George Orwell")
+                .setPublisher("Secker and Warburg")
+                .setPublicationYear(1945));
+
+        final var genre = genreRepository.save(new Genre().setName("Classic"));
+        bookGenresRepository.save(new BookGenre().setBook_id(prideId).setGenre(genre));
+
+        populateWithBookItems(bookItemRepository, prideId, user, BookItemStatus.IN_PROGRESS, LocalDateTime.now(), 5);
+        populateWithBookItems(bookItemRepository, gatsbyId, user, BookItemStatus.IN_PROGRESS, LocalDateTime.now(), 3);
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/all?sortBy=title&order=desc&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].title", is("The Great Gatsby")))
+                .andExpect(jsonPath("$.items[0].bookItems", hasSize(3)))
+                .andExpect(jsonPath("$.items[0].bookGenres", hasSize(0)))
+                .andExpect(jsonPath("$.items[1].title", is("Pride and Prejudice")))
+                .andExpect(jsonPath("$.items[1].bookItems", hasSize(5)))
+                .andExpect(jsonPath("$.items[1].bookItems[0].user.username", is("Alelxo")))
+                .andExpect(jsonPath("$.items[1].bookGenres[0].genreName", is("Classic")));
+    }
+
     @Test
     void getAllBooksAndBookItemsEmptyResponse() throws Exception {
 
@@ -1942,6 +2217,315 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.bookGenres[0].genreName", is("Action")));
     }
 
+    @Test
+    void getBookByIdCachedUntilCopyIsBorrowed() throws Exception {
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookItems[0].status", is("AVAILABLE")));
+
+        // changed behind the service, the cached response is served
+        jdbcTemplate.update("UPDATE books SET title = 'Gatsby' WHERE id = ?", bookId);
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("The Great Gatsby")));
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", is("Gatsby")))
+                .andExpect(jsonPath("$.bookItems[0].status", is("IN_PROGRESS")))
+                .andExpect(jsonPath("$.bookItems[0].user.username", is("Alelxo")));
+    }
+
+    @Test
+    void getBookByIdNotModifiedUntilCopyIsBorrowed() throws Exception {
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+
+        final var eTag = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        final var itemsETag = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "?bookId=" + bookId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "?bookId=" + bookId).header("If-None-Match", itemsETag))
+                .andExpect(status().isNotModified());
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/" + bookId).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)))
+                .andExpect(jsonPath("$.bookItems[0].status", is("IN_PROGRESS")));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "?bookId=" + bookId).header("If-None-Match", itemsETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].status", is("IN_PROGRESS")));
+    }
+
+    @Test
+    void exportBooksAsNdjsonAndCsv() throws Exception {
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner, Inc.")
+                .setPublicationYear(1925)).getId();
+        bookRepository.save(new Book()
+                .setTitle("Pride and Prejudice")
+                .setAuthor("Jane Austen")
+                .setPublisher("T. Egerton")
+                .setPublicationYear(1813));
+        final var genre = genreRepository.save(new Genre().setName("Classic"));
+        bookGenresRepository.save(new BookGenre().setBook_id(bookId).setGenre(genre));
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+
+        final var ndjson = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        final var documents = mvc.perform(MockMvcRequestBuilders.asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().lines().toList();
+        assertEquals(2, documents.size());
+        final var gatsby = documents.stream()
+                .map(document -> JsonPath.<String>read(document, "$.bookId"))
+                .toList()
+                .indexOf(bookId.toString());
+        assertEquals(2, JsonPath.<List<Object>>read(documents.get(gatsby), "$.bookItems").size());
+        assertEquals("Classic", JsonPath.read(documents.get(gatsby), "$.bookGenres[0].genreName"));
+
+        final var csv = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/export?format=csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        final var lines = mvc.perform(MockMvcRequestBuilders.asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString().lines().toList();
+        assertEquals(4, lines.size());
+        assertTrue(lines.getFirst().startsWith("book_id,title,author,publisher"));
+        assertEquals(2, lines.stream().filter(line -> line.contains("\"Scribner, Inc.\"") && line.contains("Classic")).count());
+    }
+
+    @Test
+    void exportsBeyondTheLimitAreRefusedUntilAPermitIsReleased() throws Exception {
+        final var permits = new ArrayList<ExportLimiter.Permit>();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            for (int x = 0; x < maxConcurrentExports; x++) {
+                permits.add(exportLimiter.acquire());
+            }
+
+            mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/export"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.errorId", is(114)));
+
+            permits.removeLast().close();
+            final var result = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                    .andExpect(status().isOk());
+        } finally {
+            permits.forEach(ExportLimiter.Permit::close);
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void importBooksFromCsvAndNdjsonSkipsDuplicatesAndRejectsInvalidRows() throws Exception {
+        bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setEdition("1st")
+                .setPublicationYear(1925));
+
+        final var csv = """
+                title,author,publisher,edition,publication,copies
+                The Great Gatsby,F. Scott Fitzgerald,Scribner,1st,1925,2
+                "Pride and Prejudice","Jane Austen","T. Egerton, Whitehall",1st,1813,3
+                Pride and Prejudice,Jane Austen,T. Egerton,1st,1813,1
+                ,Nobody,Nowhere,1st,2000,0
+                Moby-Dick,Herman Melville,Harper & Brothers,1st,eighteen,1
+                Moby-Dick,Herman Melville,Harper & Brothers,1st,1851,
+                """;
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + BOOKS + "/import?format=csv")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(6))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.copies").value(3))
+                .andExpect(jsonPath("$.duplicates").value(2))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.rejections[0].line").value(5))
+                .andExpect(jsonPath("$.rejections[0].reason", containsString("title")))
+                .andExpect(jsonPath("$.rejections[1].line").value(6))
+                .andExpect(jsonPath("$.rowsPerSecond").isNumber());
+
+        final var ndjson = """
+                {"title":"War and Peace","author":"Leo Tolstoy","publisher":"The Russian Messenger","publication":1869,"copies":4}
+                {"title":"Moby-Dick","author":"Herman Melville","publisher":"Harper & Brothers","edition":"1st","publication":1851}
+                not json
+                """;
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + BOOKS + "/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.copies").value(4))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.rejections[0].line").value(3));
+
+        assertEquals(4, bookRepository.count());
+        assertEquals(7, bookItemRepository.count());
+        assertEquals(7, jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM book_item_history h
+                JOIN book_items bi ON bi.id = h.item_id
+                WHERE h.action_type = 'ADDED'
+                """, Long.class));
+
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + BOOKS + "/import?format=csv")
+                        .contentType("text/csv")
+                        .content("name,surname\nAlex,Bur\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorId", is(113)));
+    }
+
+    @Test
+    void searchBooksByWordsPrefixAndPhraseWithFilters() throws Exception {
+        final var gatsbyId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublicationYear(1925)).getId();
+        final var tenderId = bookRepository.save(new Book()
+                .setTitle("Tender Is the Night")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1934)).getId();
+        final var believersId = bookRepository.save(new Book()
+                .setTitle("The Great Believers")
+                .setAuthor("Rebecca Makkai")
+                .setPublisher("Viking")
+                .setDescription("A night in Chicago during the AIDS crisis")
+                .setPublicationYear(2018)).getId();
+        final var genre = genreRepository.save(new Genre().setName("Classic"));
+        bookGenresRepository.save(new BookGenre().setBook_id(gatsbyId).setGenre(genre));
+        bookItemRepository.save(new BookItem().setBookId(gatsbyId).setStatus(BookItemStatus.AVAILABLE));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=fitzgerald"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.items[*].id", containsInAnyOrder(gatsbyId.toString(), tenderId.toString())));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=night"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id", is(tenderId.toString())))
+                .andExpect(jsonPath("$.items[1].id", is(believersId.toString())));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?mode=prefix").param("q", "great belie"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(believersId.toString())));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?mode=phrase").param("q", "great gatsby"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(gatsbyId.toString())));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?mode=phrase").param("q", "gatsby great"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(0)));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=great&genre=classic"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(gatsbyId.toString())));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=great&available=false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(believersId.toString())));
+
+        jdbcTemplate.update("UPDATE books SET title = 'The Lost Believers' WHERE id = ?", believersId);
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=lost"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(believersId.toString())));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/search?q=great&mode=fuzzy"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void suggestBooksByPrefixesOfTitleAndAuthorWords() throws Exception {
+        final var books = List.of(
+                BookRequest.builder().title("Tender Is the Night").author("F. Scott Fitzgerald").publisher("Scribner").build(),
+                BookRequest.builder().title("The Great Gatsby").author("F. Scott Fitzgerald").publisher("Scribner").build(),
+                BookRequest.builder().title("Les Misérables").author("Victor Hugo").publisher("A. Lacroix").build());
+        final var ids = new ArrayList<String>();
+        for (final var book : books) {
+            final var response = mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + BOOKS)
+                            .contentType("application/json")
+                            .content(objectMapper.writeValueAsString(book)))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            ids.add(JsonPath.read(response, "$.id"));
+        }
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/suggestions").param("q", "fitz"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("The Great Gatsby", "Tender Is the Night")));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/suggestions").param("q", "gre gats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].bookId", contains(ids.get(1))));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/suggestions").param("q", "les miser"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("Les Misérables")));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/suggestions").param("q", "scott").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + BOOKS + "/" + ids.get(1)));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + BOOKS + "/suggestions").param("q", "fitz"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].title", contains("Tender Is the Night")));
+    }
+
     @Test
     void getBookByIdNotFound() throws Exception {
 
@@ -2028,6 +2612,320 @@ class BookControllerTest {
 
     }
 
+    @Test
+    void borrowAnyBookItem300ThreadsNoDoubleAllocation() {
+        final var copies = 200;
+        final var borrowers = 300;
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        jdbcTemplate.update("INSERT INTO book_items (book_id) SELECT ? FROM generate_series(1, ?)", bookId, copies);
+
+        final var url = GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?userId=" + user.getId();
+        final var latencies = new ConcurrentLinkedQueue<Long>();
+        final var bookItemIds = new ConcurrentLinkedQueue<String>();
+        List<Callable<Integer>> listOfThreads = new ArrayList<>();
+        for (int x = 0; x < borrowers; x++) {
+            listOfThreads.add(() -> {
+                final var start = System.nanoTime();
+                final var response = mvc.perform(MockMvcRequestBuilders.patch(url)).andReturn().getResponse();
+                latencies.add(System.nanoTime() - start);
+                if (response.getStatus() == 202) {
+                    bookItemIds.add(JsonPath.read(response.getContentAsString(), "$.bookItemId"));
+                }
+                return response.getStatus();
+            });
+        }
+
+        final var start = System.nanoTime();
+        final var statusCodes = threadRunner(32, listOfThreads);
+        final var elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        final var sortedLatencies = latencies.stream().sorted().toList();
+        final var p99Ms = sortedLatencies.get((int) Math.ceil(sortedLatencies.size() * 0.99) - 1) / 1_000_000.0;
+        log.info("borrowingAny: {} requests in {} ms, throughput {} req/s, p99 {} ms", borrowers,
+                String.format("%.1f", elapsedMs), String.format("%.1f", borrowers / (elapsedMs / 1000)),
+                String.format("%.2f", p99Ms));
+
+        final var borrowedHistory = bookItemHistoryRepository.findAll().stream()
+                .filter(history -> history.getActionType() == BookAction.BORROWED)
+                .toList();
+
+        assertEquals(copies, statusCodes.stream().filter(code -> code == 202).count());
+        assertEquals(borrowers - copies, statusCodes.stream().filter(code -> code == 404).count());
+        assertEquals(copies, new HashSet<>(bookItemIds).size());
+        assertEquals(copies, borrowedHistory.size());
+        assertEquals(copies, borrowedHistory.stream().map(BookItemHistory::getItemId).distinct().count());
+    }
+
+    @Test
+    void getBookItemHistoryWithinTimeRange() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        final var bookItemId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookItemId + "/return?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+
+        final var formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+        final var hourAgo = Utils.currentDate().minusHours(1).format(formatter);
+        final var dayAgo = Utils.currentDate().minusDays(1).format(formatter);
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/history?startDate=" + hourAgo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.items[0].actionType", is("RETURNED")))
+                .andExpect(jsonPath("$.items[*].bookItemId", everyItem(is(bookItemId.toString()))));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/history?startDate=" + dayAgo + "&endDate=" + hourAgo))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(0)));
+
+        final var month = YearMonth.from(Utils.currentDate());
+        final var plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM book_item_history WHERE action_at >= ? AND action_at < ?", String.class,
+                month.atDay(1).atStartOfDay(), month.atDay(2).atStartOfDay()));
+
+        assertTrue(plan.contains("book_item_history_" + month.format(DateTimeFormatter.ofPattern("yyyy_MM"))), plan);
+        assertFalse(plan.contains("book_item_history_default"), plan);
+    }
+
+    @Test
+    void placeHoldWaitsAndReceivesReturnedCopy() throws Exception {
+
+        final var users = new ArrayList<User>();
+        for (int i = 0; i < 3; i++) {
+            users.add(userRepository.save(new User()
+                    .setUsername("Alelxo" + i)
+                    .setName("Alex")
+                    .setSurname("Bur")
+                    .setEmail("efaf@gmail.com")
+                    .setPhoneNumber("380679920267")
+                    .setAddress("assfasfd")));
+        }
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        final var bookItemId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+
+        final var holdsUrl = GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/holds?userId=";
+
+        mvc.perform(MockMvcRequestBuilders.post(holdsUrl + users.get(0).getId()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status", is("FULFILLED")))
+                .andExpect(jsonPath("$.bookItemId", is(bookItemId.toString())));
+
+        final var secondHoldId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post(holdsUrl + users.get(1).getId()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status", is("WAITING")))
+                .andExpect(jsonPath("$.position", is(1)))
+                .andReturn().getResponse().getContentAsString(), "$.holdId");
+
+        final var thirdHoldId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.post(holdsUrl + users.get(2).getId()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.status", is("WAITING")))
+                .andExpect(jsonPath("$.position", is(2)))
+                .andReturn().getResponse().getContentAsString(), "$.holdId");
+
+        mvc.perform(MockMvcRequestBuilders.post(holdsUrl + users.get(2).getId()))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookItemId + "/return?" + "userId=" + users.get(0).getId()))
+                .andExpect(status().isAccepted());
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/holds/" + secondHoldId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("FULFILLED")))
+                .andExpect(jsonPath("$.bookItemId", is(bookItemId.toString())));
+
+        final var bookItem = bookItemRepository.findById(bookItemId).orElseThrow();
+        assertEquals(BookItemStatus.IN_PROGRESS, bookItem.getStatus());
+        assertEquals(users.get(1).getId(), bookItem.getUserId().getId());
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/holds/" + thirdHoldId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("WAITING")))
+                .andExpect(jsonPath("$.position", is(1)));
+
+        mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + ITEMS + "/holds/" + thirdHoldId))
+                .andExpect(status().isNoContent());
+        mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + ITEMS + "/holds/" + thirdHoldId))
+                .andExpect(status().isNotFound());
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/holds/" + thirdHoldId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("CANCELLED")));
+    }
+
+    @Test
+    void streamAvailabilityPushesCommittedStatusChanges() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        final var bookItemId = bookItemRepository.save(new BookItem()
+                .setBookId(bookId)
+                .setStatus(BookItemStatus.AVAILABLE)).getId();
+
+        final var stream = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + ITEMS + "/availability/stream?bookId=" + bookId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId()))
+                .andExpect(status().isAccepted());
+
+        final var deadline = System.currentTimeMillis() + 5_000;
+        while (!stream.getResponse().getContentAsString().contains("IN_PROGRESS") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        final var content = stream.getResponse().getContentAsString();
+        assertTrue(content.contains("event:status"), content);
+        assertTrue(content.contains(bookItemId.toString()), content);
+        assertTrue(content.contains("IN_PROGRESS"), content);
+    }
+
+    @Test
+    void borrowAnyBookItemRetriedWithIdempotencyKey() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setDescription("A classic novel set in the Roaring Twenties that explores themes of wealth, love, and the American Dream.")
+                .setPublisher("Scribner")
+                .setEdition("3rd Edition")
+                .setPublicationYear(1925)).getId();
+
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+
+        final var idempotencyKey = getUUID();
+        final var url = GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId();
+
+        final var bookItemId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.patch(url).header(IDEMPOTENCY_KEY_HEADER_NAME, idempotencyKey))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString(), "$.bookItemId");
+
+        mvc.perform(MockMvcRequestBuilders.patch(url).header(IDEMPOTENCY_KEY_HEADER_NAME, idempotencyKey))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.bookItemId", is(bookItemId)));
+
+        assertEquals(1, bookItemRepository.findAll().stream()
+                .filter(bookItem -> bookItem.getStatus() == BookItemStatus.IN_PROGRESS)
+                .count());
+
+        mvc.perform(MockMvcRequestBuilders.patch(GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + getUUID())
+                        .header(IDEMPOTENCY_KEY_HEADER_NAME, idempotencyKey))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.errorId", is(109)));
+    }
+
+    @Test
+    void idempotencyKeyLeftInProgressIsReclaimedAfterItsLease() throws Exception {
+
+        final var user = userRepository.save(new User()
+                .setUsername("Alelxo")
+                .setName("Alex")
+                .setSurname("Bur")
+                .setEmail("efaf@gmail.com")
+                .setPhoneNumber("380679920267")
+                .setAddress("assfasfd"));
+
+        final var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+
+        bookItemRepository.save(new BookItem().setBookId(bookId).setStatus(BookItemStatus.AVAILABLE));
+
+        final var url = GLOBAL_BASE_URI + ITEMS + "/" + bookId + "/borrowingAny?" + "userId=" + user.getId();
+        final var fingerprint = "PATCH " + url;
+        final var leased = getUUID().toString();
+        final var abandoned = getUUID().toString();
+
+        // claims of instances which died before storing the response, one of them still within its lease
+        jdbcTemplate.update("""
+                INSERT INTO idempotency_keys (idempotency_key, fingerprint, created_at, expires_at, lease_until)
+                VALUES (?, ?, LOCALTIMESTAMP, LOCALTIMESTAMP + INTERVAL '1 day', LOCALTIMESTAMP + INTERVAL '1 minute'),
+                       (?, ?, LOCALTIMESTAMP - INTERVAL '2 minutes', LOCALTIMESTAMP + INTERVAL '1 day', LOCALTIMESTAMP - INTERVAL '1 minute')
+                """, leased, fingerprint, abandoned, fingerprint);
+
+        mvc.perform(MockMvcRequestBuilders.patch(url).header(IDEMPOTENCY_KEY_HEADER_NAME, leased))
+                .andExpect(status().isConflict());
+
+        final var bookItemId = JsonPath.read(mvc.perform(MockMvcRequestBuilders.patch(url).header(IDEMPOTENCY_KEY_HEADER_NAME, abandoned))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString(), "$.bookItemId");
+
+        mvc.perform(MockMvcRequestBuilders.patch(url).header(IDEMPOTENCY_KEY_HEADER_NAME, abandoned))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.bookItemId", is(bookItemId)));
+
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key IN (?, ?)", leased, abandoned);
+    }
+
     private List<Callable<Integer>> getCallables(String url, int count) {
         List<Callable<Integer>> listOfThreads = new ArrayList<>();
         for (int x = 0; x < count; x++) {
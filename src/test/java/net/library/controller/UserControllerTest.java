@@ -20,6 +20,10 @@ import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
 import static net.library.tools.Tools.objectToStringConverter;
 import static net.library.util.HttpUtil.*;
 import static net.library.util.Utils.getUUID;
@@ -80,6 +84,222 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.items", hasSize(0)));
     }
 
+    @Test
+    void getAllUsersWithEstimatedOrSkippedTotal() throws Exception {
+        service.addUser(new UserRequest("Alelxo", "Alex", "Bur", "efaf@gmail.com", "380679920267", "assfasfd"));
+        service.addUser(new UserRequest("Burito", "Alex", "Bur", "efaf@gmail.com", "380679920268", "assfasfd"));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS).param("count", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").doesNotExist())
+                .andExpect(jsonPath("$.items", hasSize(2)));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS)
+                        .param("count", "estimate")
+                        .param("username", "Burito"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.items[0].username", is("Burito")));
+    }
+
+    @Test
+    void getAllUsersByCursorWalksEveryUserOnce() throws Exception {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, name, surname, email, created_at)
+                SELECT 'Alelxo' || g, 'Alex', 'Bur', 'efaf@gmail.com', TIMESTAMP '2025-01-01 10:00:00'
+                FROM generate_series(1, 5) g
+                """);
+
+        var usernames = new HashSet<String>();
+        var cursor = "";
+        var pages = 0;
+        do {
+            var response = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS)
+                            .param("cursor", cursor)
+                            .param("size", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.pageSize", is(2)))
+                    .andExpect(jsonPath("$.total").doesNotExist())
+                    .andReturn().getResponse().getContentAsString();
+            var page = objectMapper.readTree(response);
+            page.get("items").forEach(user -> usernames.add(user.get("username").asText()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(5, usernames.size());
+    }
+
+    @Test
+    void searchUsersBySubstringPrefixAndSimilarity() throws Exception {
+        service.addUser(new UserRequest("Alelxo", "Alexander", "Burito", "alelxo@gmail.com", "380679920267", "assfasfd"));
+        service.addUser(new UserRequest("jdoe", "John", "Doe", "john.doe@gmail.com", "380679920268", "assfasfd"));
+        service.addUser(new UserRequest("max_power", "Max", "Power", "max@power.com", "380679920269", "assfasfd"));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "BURI"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.items[0].username", is("Alelxo")));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "gmail"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].username", containsInAnyOrder("Alelxo", "jdoe")));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "joh").param("mode", "prefix"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].username", contains("jdoe")));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "ohn").param("mode", "prefix"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(0)));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "Alexandr").param("mode", "fuzzy"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].username", is("Alelxo")));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "x_p"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].username", contains("max_power")));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS).param("username", "x_p"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].username", contains("max_power")));
+
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/search").param("q", "al"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportUsersAsNdjson() throws Exception {
+        for (int x = 0; x < 3; x++) {
+            service.addUser(new UserRequest("user" + x, "Name" + x, "Surname" + x, "user" + x + "@gmail.com", "38067992026" + x, "assfasfd"));
+        }
+
+        final var result = mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        final var lines = mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().lines().toList();
+
+        assertEquals(3, lines.size());
+        final var usernames = new HashSet<String>();
+        for (var line : lines) {
+            usernames.add(objectMapper.readTree(line).get("username").asText());
+        }
+        assertEquals(Set.of("user0", "user1", "user2"), usernames);
+        final long streamed = service.streamAll(Stream::count);
+        assertEquals(3, streamed);
+    }
+
+    @Test
+    void bulkUpdateUsersByFilterInChunks() throws Exception {
+        for (int x = 0; x < 5; x++) {
+            service.addUser(new UserRequest("user" + x, "Name" + x, "Surname" + x, "user" + x + "@gmail.com", "38067992026" + x, "assfasfd"));
+        }
+        final var declinedId = service.addUser(new UserRequest("declined", "Name", "Surname", "declined@gmail.com", "380679920269", "assfasfd")).getId();
+        service.updateModerationState(declinedId, ModerationState.DECLINED);
+
+        final var started = mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + USERS + "/bulk")
+                        .param("moderation_state", "ON_REVIEW")
+                        .contentType("application/json")
+                        .content("{\"moderationState\": \"APPROVED\", \"roleType\": \"ADMIN\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.matched", is(5)))
+                .andReturn().getResponse();
+        final var location = started.getHeader("Location");
+        assertNotNull(location);
+
+        var job = objectMapper.readTree(started.getContentAsString());
+        for (int attempt = 0; attempt < 100 && job.get("status").asText().equals("RUNNING"); attempt++) {
+            Thread.sleep(100);
+            job = objectMapper.readTree(mvc.perform(MockMvcRequestBuilders.get(location))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        }
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(5, job.get("updated").asLong());
+        // chunks of 2 users, see application-test.yml
+        assertEquals(3, job.get("chunks").asLong());
+
+        final var users = service.streamAll(Stream::toList);
+        assertEquals(5, users.stream()
+                .filter(user -> user.getModerationState() == ModerationState.APPROVED && user.getRoleType() == RoleType.ADMIN
+                        && user.getUserState() == UserState.ACTIVE)
+                .count());
+        final var declined = users.stream().filter(user -> user.getId().equals(declinedId)).findFirst().orElseThrow();
+        assertEquals(ModerationState.DECLINED, declined.getModerationState());
+        assertEquals(RoleType.USER, declined.getRoleType());
+
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + USERS + "/bulk")
+                        .param("moderation_state", "ON_REVIEW")
+                        .contentType("application/json")
+                        .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorId", is(106)));
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/bulk/" + getUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void importUsersFromCsvAndNdjsonRejectsInvalidRowsAndTakenUsernames() throws Exception {
+        service.addUser(new UserRequest("Alelxo", "Alex", "Bur", "efaf@gmail.com", "380679920267", "assfasfd"));
+
+        final var csv = """
+                username,name,surname,email,phoneNumber,address
+                jdoe,John,Doe,john.doe@gmail.com,380 67 992 0268,"Kyiv, Khreshchatyk 1"
+                Alelxo,Alex,Bur,alex@gmail.com,380679920267,
+                jdoe,Jane,Doe,jane.doe@gmail.com,380679920269,
+                mpower,Max,Power,not-an-email,380679920260,
+                kbird,Kate,Bird,kate@gmail.com,12345,
+                """;
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + USERS + "/import?format=csv")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(5))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andExpect(jsonPath("$.rejections[*].line", containsInAnyOrder(3, 4, 5, 6)))
+                .andExpect(jsonPath("$.rejections[?(@.line == 3)].reason", contains("username: already exists")))
+                .andExpect(jsonPath("$.rejections[?(@.line == 4)].reason", contains("username: repeats line 2")))
+                .andExpect(jsonPath("$.rejections[?(@.line == 5)].reason", contains(containsString("email"))))
+                .andExpect(jsonPath("$.rejections[?(@.line == 6)].reason", contains(containsString("phoneNumber"))))
+                .andExpect(jsonPath("$.rowsPerSecond").isNumber());
+
+        final var ndjson = """
+                {"username":"kbird","name":"Kate","surname":"Bird","email":"kate@gmail.com","phoneNumber":"380679920261"}
+                not json
+                """;
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + USERS + "/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejections[0].line").value(2));
+
+        final var users = service.streamAll(Stream::toList);
+        assertEquals(3, users.size());
+        final var jdoe = users.stream().filter(user -> user.getUsername().equals("jdoe")).findFirst().orElseThrow();
+        assertEquals("380679920268", jdoe.getPhoneNumber());
+        assertEquals("Kyiv, Khreshchatyk 1", jdoe.getAddress());
+        assertEquals(ModerationState.ON_REVIEW, jdoe.getModerationState());
+
+        mvc.perform(MockMvcRequestBuilders.post(GLOBAL_BASE_URI + USERS + "/import?format=csv")
+                        .contentType("text/csv")
+                        .content("title,author\nDune,Frank Herbert\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorId", is(113)));
+    }
+
+    @Test
+    void getAllUsersByInvalidCursor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS).param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorId", is(112)));
+    }
+
     @Test
     void getUsersError() throws Exception {
         mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/fg"))
@@ -926,14 +1146,14 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var userId = service.getAllUsers();
+        final var userId = service.streamAll(Stream::toList);
 
         assertFalse(userId.isEmpty());
 
         mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + USERS))
                 .andExpect(status().isNoContent());
 
-        final var user = service.getAllUsers();
+        final var user = service.streamAll(Stream::toList);
 
         assertTrue(user.isEmpty());
     }
@@ -943,7 +1163,7 @@ class UserControllerTest {
         mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + USERS))
                 .andExpect(status().isNoContent());
 
-        final var user = service.getAllUsers();
+        final var user = service.streamAll(Stream::toList);
 
         assertTrue(user.isEmpty());
     }
@@ -960,7 +1180,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var userId = service.getAllUsers().get(0).getId();
+        final var userId = service.streamAll(Stream::toList).get(0).getId();
 
         mvc.perform(MockMvcRequestBuilders.get(GLOBAL_BASE_URI + USERS + "/" + userId)
                         .header(CORRELATION_ID_HEADER_NAME, xCorrelationId))
@@ -1003,14 +1223,14 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var userId = service.getAllUsers().get(0).getId();
+        final var userId = service.streamAll(Stream::toList).get(0).getId();
 
         mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + USERS + "/" + userId)
                         .header(CORRELATION_ID_HEADER_NAME, xCorrelationId))
                 .andExpect(status().isNoContent())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var user = service.getAllUsers();
+        final var user = service.streamAll(Stream::toList);
 
         assertTrue(user.isEmpty());
     }
@@ -1020,7 +1240,7 @@ class UserControllerTest {
         mvc.perform(MockMvcRequestBuilders.delete(GLOBAL_BASE_URI + USERS + "/" + getUUID()))
                 .andExpect(status().isNotFound());
 
-        final var user = service.getAllUsers();
+        final var user = service.streamAll(Stream::toList);
 
         assertTrue(user.isEmpty());
     }
@@ -1061,7 +1281,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1075,7 +1295,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userModStateAfterUpdate = service.getAllUsers()
+        final var userModStateAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getModerationState();
         assertEquals(ModerationState.APPROVED, userModStateAfterUpdate);
     }
@@ -1092,7 +1312,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1106,7 +1326,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userModStateAfterUpdate = service.getAllUsers()
+        final var userModStateAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getModerationState();
         assertEquals(ModerationState.DECLINED, userModStateAfterUpdate);
     }
@@ -1123,7 +1343,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1178,7 +1398,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers().get(0);
+        final var user = service.streamAll(Stream::toList).get(0);
         final var userId = user.getId();
 
         assertEquals(UserState.ACTIVE, user.getUserState());
@@ -1190,7 +1410,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userModStateAfterUpdate = service.getAllUsers()
+        final var userModStateAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getUserState();
         assertEquals(UserState.BANNED, userModStateAfterUpdate);
     }
@@ -1207,7 +1427,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers().get(0);
+        final var user = service.streamAll(Stream::toList).get(0);
 
         final var userId = user.getId();
 
@@ -1220,7 +1440,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userModStateAfterUpdate = service.getAllUsers()
+        final var userModStateAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getUserState();
         assertEquals(UserState.SUSPENDED, userModStateAfterUpdate);
     }
@@ -1237,12 +1457,12 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var userId = service.getAllUsers()
+        final var userId = service.streamAll(Stream::toList)
                 .get(0).getId();
 
         service.updateUserState(userId, UserState.BANNED);
 
-        final var userBeforeUpdate = service.getAllUsers().get(0);
+        final var userBeforeUpdate = service.streamAll(Stream::toList).get(0);
 
         assertEquals(UserState.BANNED, userBeforeUpdate.getUserState());
 
@@ -1253,7 +1473,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userModStateAfterUpdate = service.getAllUsers()
+        final var userModStateAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getUserState();
         assertEquals(UserState.ACTIVE, userModStateAfterUpdate);
     }
@@ -1270,7 +1490,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1299,7 +1519,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1313,7 +1533,7 @@ class UserControllerTest {
                 .andExpect(status().isAccepted())
                 .andExpect(header().stringValues(CORRELATION_ID_HEADER_NAME, xCorrelationId));
 
-        final var userRoleTypeAfterUpdate = service.getAllUsers()
+        final var userRoleTypeAfterUpdate = service.streamAll(Stream::toList)
                 .get(0).getRoleType();
         assertEquals(RoleType.ADMIN, userRoleTypeAfterUpdate);
     }
@@ -1330,7 +1550,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1359,7 +1579,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
@@ -1389,7 +1609,7 @@ class UserControllerTest {
 
         service.addUser(new UserRequest(username, name, surname, email, phoneNumber, address));
 
-        final var user = service.getAllUsers()
+        final var user = service.streamAll(Stream::toList)
                 .get(0);
 
         final var userId = user.getId();
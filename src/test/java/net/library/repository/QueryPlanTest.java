@@ -0,0 +1,229 @@
+package net.library.repository;
+
+import net.library.model.request.CountMode;
+import net.library.model.request.UserBulkUpdateRequest;
+import net.library.model.response.BulkUpdateJob;
+import net.library.repository.enums.UserState;
+import net.library.service.BookService;
+import net.library.service.UserService;
+import net.library.tools.QueryPlanRecorder;
+import net.library.util.KeysetCursor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plans of the hot queries generated from {@link UserSpecification} and {@link BookItemSpecification}, explained
+ * with the parameters Hibernate bound on tables of realistic size and statistics: a query falling back to
+ * a sequential scan, or a keyset page whose index scan is not bounded by the cursor, fails the test. Sizes are set with -Dplan.users (200k by default) and -Dplan.books
+ * (20k by default, {@value COPIES} copies each).
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+    private static final int USERS = Integer.getInteger("plan.users", 200_000);
+    private static final int BOOKS = Integer.getInteger("plan.books", 20_000);
+    private static final int COPIES = 5;
+    private static final PageRequest PAGE = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+    @Autowired
+    private QueryPlanRecorder recorder;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookItemRepository bookItemRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    static class RecorderConfiguration {
+
+        @Bean
+        static QueryPlanRecorder queryPlanRecorder() {
+            return new QueryPlanRecorder();
+        }
+    }
+
+    @BeforeAll
+    void insertData() {
+        // rare states are the ones worth filtering by: 1% banned, 0.5% suspended, 2% on review, 0.1% admins
+        jdbcTemplate.update("""
+                INSERT INTO users (username, name, surname, email, user_state, moderation_state, role_type, created_at)
+                SELECT 'user' || g, 'Name' || g % 5000, 'Surname' || g % 20000, 'user' || g || '@example.com',
+                       CAST(CASE WHEN g % 100 = 3 THEN 'BANNED' WHEN g % 200 = 5 THEN 'SUSPENDED' ELSE 'ACTIVE' END
+                            AS user_state_types),
+                       CAST(CASE WHEN g % 50 = 7 THEN 'ON_REVIEW' WHEN g % 100 = 9 THEN 'DECLINED' ELSE 'APPROVED' END
+                            AS moderation_state_types),
+                       CAST(CASE WHEN g % 1000 = 11 THEN 'ADMIN' ELSE 'USER' END AS role_type_types),
+                       LOCALTIMESTAMP - g * INTERVAL '1 minute'
+                FROM generate_series(1, ?) g
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, publisher, edition)
+                SELECT 'Title ' || g, 'Author ' || g % 5000, 'Publisher', CAST(g AS text)
+                FROM generate_series(1, ?) g
+                """, BOOKS);
+        // 5% of copies borrowed, 1% removed
+        jdbcTemplate.update("""
+                INSERT INTO book_items (book_id, status, created_at)
+                SELECT b.id,
+                       CAST(CASE WHEN (b.n * ? + c) % 20 = 0 THEN 'IN_PROGRESS' WHEN (b.n * ? + c) % 100 = 1 THEN 'REMOVED'
+                            ELSE 'AVAILABLE' END AS book_item_status_types),
+                       LOCALTIMESTAMP - (b.n * ? + c) * INTERVAL '1 minute'
+                FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM books) b, generate_series(1, ?) c
+                """, COPIES, COPIES, COPIES, COPIES);
+        jdbcTemplate.execute("VACUUM ANALYZE users, books, book_items");
+    }
+
+    @AfterAll
+    void cleanAfter() {
+        // plain deletes, removing this many rows entity by entity takes minutes
+        jdbcTemplate.update("DELETE FROM book_item_history");
+        jdbcTemplate.update("DELETE FROM book_items");
+        jdbcTemplate.update("DELETE FROM books");
+        jdbcTemplate.update("DELETE FROM users");
+        bookService.removeAll();
+    }
+
+    @Test
+    void userFiltersAreServedByIndexes() {
+        var cursor = new KeysetCursor(Sort.Direction.DESC, LocalDateTime.now().minusDays(7), UUID.randomUUID());
+
+        assertIndexSeek("users after cursor", () ->
+                userService.getAllByFilterAfter(null, null, null, null, null, null, cursor, 10));
+        assertNoSequentialScan("user state", () ->
+                userService.getAllByFilter(null, null, null, null, "BANNED", null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("suspended users", () ->
+                userService.getAllByFilter(null, null, null, null, "SUSPENDED", null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("moderation state", () ->
+                userService.getAllByFilter(null, null, null, "ON_REVIEW", null, null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("role", () ->
+                userService.getAllByFilter(null, null, null, null, null, "ADMIN", PAGE, CountMode.EXACT));
+        assertNoSequentialScan("user state and period", () ->
+                userService.getAllByFilter(LocalDateTime.now().minusDays(30).toString().substring(0, 16), null, null, null,
+                        "BANNED", null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("username", () ->
+                userService.getAllByFilter(null, null, "er4242", null, null, null, PAGE, CountMode.EXACT));
+        assertIndexSeek("moderation state after cursor", () ->
+                userService.getAllByFilterAfter(null, null, null, "ON_REVIEW", null, null, cursor, 10));
+    }
+
+    @Test
+    void bookItemFiltersAreServedByIndexes() {
+        var bookId = jdbcTemplate.queryForObject("SELECT book_id FROM book_items WHERE status = 'IN_PROGRESS' LIMIT 1",
+                UUID.class);
+        var cursor = new KeysetCursor(Sort.Direction.DESC, LocalDateTime.now().minusDays(7), UUID.randomUUID());
+
+        assertNoSequentialScan("copies of a book", () ->
+                bookService.getBookItemIds(null, bookId, null, null, null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("copies of a book by status", () ->
+                bookService.getBookItemIds(null, bookId, "IN_PROGRESS", null, null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("available copies of a book", () ->
+                bookItemRepository.existsAvailableByBookId(bookId));
+        assertNoSequentialScan("borrowed copies", () ->
+                bookService.getBookItemIds(null, null, "IN_PROGRESS", null, null, PAGE, CountMode.EXACT));
+        assertNoSequentialScan("removed copies", () ->
+                bookService.getBookItemIds(null, null, "REMOVED", null, null, PAGE, CountMode.EXACT));
+        assertIndexSeek("borrowed copies after cursor", () ->
+                bookService.getBookItemIdsAfter(null, null, "IN_PROGRESS", null, null, cursor, 10));
+    }
+
+    @Test
+    void pageOfCopiesIsReadWithItsBorrowersInOneQuery() {
+        var bookItemIds = jdbcTemplate.queryForList("""
+                WITH copies AS (SELECT id, row_number() OVER (ORDER BY id) AS n
+                                FROM book_items WHERE status = 'IN_PROGRESS' LIMIT 10),
+                     borrowers AS (SELECT id, row_number() OVER (ORDER BY id) AS n FROM users LIMIT 10)
+                UPDATE book_items bi
+                SET user_id = b.id
+                FROM copies c JOIN borrowers b ON b.n = c.n
+                WHERE bi.id = c.id
+                RETURNING bi.id
+                """, UUID.class);
+        assertEquals(10, bookItemIds.size());
+
+        // an eager borrower loaded on its own would add one select per borrowed copy
+        var queries = recorder.record(() -> bookService.getBookItemsByIds(bookItemIds));
+        assertEquals(1, queries.size(), queries.toString());
+    }
+
+    @Test
+    void bulkUpdateChunksSeekFromTheCursor() {
+        // admins stay matched by the filter after the update, chunks of 2 users (see application-test.yml)
+        var plans = plans("bulk update", () -> {
+            var job = userService.bulkUpdate(null, null, null, null, null, "ADMIN",
+                    new UserBulkUpdateRequest(null, UserState.ACTIVE, null));
+            awaitCompletion(job.getJobId());
+        });
+
+        var chunksAfterCursor = plans.stream()
+                .filter(plan -> plan.sql().contains("created_at>="))
+                .toList();
+        assertTrue(chunksAfterCursor.size() > 1, "chunks after the first one: " + chunksAfterCursor.size());
+        chunksAfterCursor.forEach(plan -> assertIndexSeek("bulk update chunk", plan));
+    }
+
+    private void assertNoSequentialScan(final String name, final Runnable action) {
+        plans(name, action).forEach(plan -> assertFalse(plan.plan().contains("Seq Scan"),
+                name + ":\n" + plan.sql() + "\n" + plan.plan()));
+    }
+
+    private void assertIndexSeek(final String name, final Runnable action) {
+        plans(name, action).forEach(plan -> assertIndexSeek(name, plan));
+    }
+
+    /**
+     * A keyset page must start its index scan at the cursor: a scan from the start of the index filtering
+     * the earlier rows shows no sequential scan either, but reads every earlier row on every page.
+     */
+    private static void assertIndexSeek(final String name, final Plan plan) {
+        assertTrue(plan.plan().lines().anyMatch(line -> line.contains("Index Cond") && line.contains("created_at")),
+                name + ":\n" + plan.sql() + "\n" + plan.plan());
+    }
+
+    private List<Plan> plans(final String name, final Runnable action) {
+        var queries = recorder.record(action);
+        assertFalse(queries.isEmpty(), name + ": no query recorded");
+
+        return queries.stream()
+                .map(query -> new Plan(query.sql(), recorder.explain(jdbcTemplate, query)))
+                .toList();
+    }
+
+    private void awaitCompletion(final UUID jobId) {
+        try {
+            for (int attempt = 0; attempt < 600; attempt++) {
+                if (userService.getBulkUpdate(jobId).getStatus() != BulkUpdateJob.Status.RUNNING) {
+                    return;
+                }
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new AssertionError("Bulk update " + jobId + " did not finish");
+    }
+
+    private record Plan(String sql, String plan) {
+    }
+}
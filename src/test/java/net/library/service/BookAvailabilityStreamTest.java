@@ -0,0 +1,104 @@
+package net.library.service;
+
+import net.library.exception.TooManySubscribersException;
+import net.library.exception.WrongState;
+import net.library.model.event.BookItemStatusChangedEvent;
+import net.library.repository.enums.BookAction;
+import net.library.repository.enums.BookItemStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Subscriber bookkeeping of {@link BookAvailabilityStream}, with emitters standing in for connections.
+ */
+class BookAvailabilityStreamTest {
+    private static final int MAX_SUBSCRIBERS = 2;
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 2;
+
+    private final BookAvailabilityStream stream = new BookAvailabilityStream(Duration.ofMinutes(1), MAX_SUBSCRIBERS, 100,
+            SUBSCRIBER_QUEUE_CAPACITY);
+    private final UUID bookId = UUID.randomUUID();
+
+    @AfterEach
+    void shutdown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void invalidSubscriptionsAreNotCounted() {
+        for (int x = 0; x <= MAX_SUBSCRIBERS; x++) {
+            assertThrows(WrongState.class, () -> stream.subscribe(List.of()));
+            assertThrows(WrongState.class, () -> stream.subscribe(Arrays.asList(bookId, null)));
+        }
+
+        assertDoesNotThrow(() -> stream.subscribe(List.of(bookId)));
+        assertDoesNotThrow(() -> stream.subscribe(List.of(bookId)));
+    }
+
+    @Test
+    void blockedSubscriberDelaysNobodyAndIsDropped() throws InterruptedException {
+        var release = new CountDownLatch(1);
+        var received = new CountDownLatch(SUBSCRIBER_QUEUE_CAPACITY + 2);
+        stream.subscribe(List.of(bookId), new SseEmitter() {
+            @Override
+            public void send(final SseEventBuilder builder) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        stream.subscribe(List.of(bookId), new SseEmitter() {
+            @Override
+            public void send(final SseEventBuilder builder) {
+                received.countDown();
+            }
+        });
+
+        try {
+            // one event blocks the writer of the first subscriber, the following ones fill and overflow its queue
+            for (int x = 0; x < SUBSCRIBER_QUEUE_CAPACITY + 2; x++) {
+                stream.onStatusChanged(new BookItemStatusChangedEvent(bookId, UUID.randomUUID(), UUID.randomUUID(),
+                        BookItemStatus.IN_PROGRESS, true, BookAction.BORROWED, LocalDateTime.now()));
+            }
+
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            awaitFreePlace();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Subscribes once the dropped subscriber freed its place, it is dropped by the dispatcher meanwhile.
+     */
+    private void awaitFreePlace() throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try {
+                stream.subscribe(List.of(bookId));
+                return;
+            } catch (TooManySubscribersException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
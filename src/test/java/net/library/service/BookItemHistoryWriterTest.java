@@ -0,0 +1,117 @@
+package net.library.service;
+
+import net.library.model.entity.Book;
+import net.library.repository.BookRepository;
+import net.library.repository.UserRepository;
+import net.library.repository.enums.BookItemStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * History in application mode: borrowing and returning run no history trigger, their committed changes are
+ * buffered and written to 'BOOK_ITEM_HISTORY' by {@link BookItemHistoryWriter#flush()}. Scheduled flushes are
+ * pushed out of the way, every test flushes itself.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"library.history.mode=application", "library.history.flush-interval=PT1H"})
+class BookItemHistoryWriterTest {
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookItemHistoryWriter historyWriter;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UUID bookItemId;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        var bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+        bookItemId = jdbcTemplate.queryForObject("INSERT INTO book_items (book_id) VALUES (?) RETURNING id", UUID.class,
+                bookId);
+        userId = jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, name, surname, email)
+                VALUES ('history', 'Alex', 'Bur', 'history@gmail.com')
+                RETURNING id
+                """, UUID.class);
+    }
+
+    @AfterEach
+    void cleanAfter() {
+        historyWriter.flush();
+        bookService.removeAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void borrowAndReturnAreWrittenByTheFlush() {
+        bookService.borrowActionBookItemById(bookItemId, userId, BookItemStatus.IN_PROGRESS);
+        bookService.returnActionForBookItem(bookItemId, userId);
+
+        assertEquals(List.of("ADDED"), history());
+
+        historyWriter.flush();
+
+        assertEquals(List.of("ADDED", "BORROWED", "RETURNED"), history());
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM book_item_history WHERE item_id = ? AND user_id = ?", Long.class, bookItemId, userId));
+    }
+
+    @Test
+    void rolledBackBorrowIsNotWritten() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookService.borrowActionBookItemById(bookItemId, userId, BookItemStatus.IN_PROGRESS);
+            status.setRollbackOnly();
+        });
+
+        historyWriter.flush();
+        assertEquals(List.of("ADDED"), history());
+    }
+
+    @Test
+    void sessionsInTriggerModeStillWriteTheHistory() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.execute("SET LOCAL library.history_mode = 'trigger'");
+            jdbcTemplate.update("""
+                    UPDATE book_items
+                    SET status = 'IN_PROGRESS', user_id = ?, borrowed_at = CURRENT_TIMESTAMP
+                    WHERE id = ?
+                    """, userId, bookItemId);
+        });
+
+        assertEquals(List.of("ADDED", "BORROWED"), history());
+    }
+
+    private List<String> history() {
+        return jdbcTemplate.queryForList("""
+                SELECT CAST(action_type AS text)
+                FROM book_item_history
+                WHERE item_id = ?
+                ORDER BY action_at, CAST(action_type AS text)
+                """, String.class, bookItemId);
+    }
+}
@@ -0,0 +1,120 @@
+package net.library.service;
+
+import net.library.model.dto.BookItemDto;
+import net.library.model.entity.Book;
+import net.library.model.response.BookResponse;
+import net.library.repository.BookRepository;
+import net.library.repository.UserRepository;
+import net.library.tools.Benchmarks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the JSON read model ({@link BookDocumentReader}) with the entity mapping of {@link BookService}.
+ * The benchmark is opt-in: -Dbenchmark.read-model=true, sizes are set with -Dbenchmark.books,
+ * -Dbenchmark.copies (per book) and -Dbenchmark.iterations.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class BookReadModelTest {
+    private static final Logger log = LoggerFactory.getLogger(BookReadModelTest.class);
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 20);
+    private static final int COPIES = Integer.getInteger("benchmark.copies", 50);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final PageRequest PAGE = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "author", "createdAt"));
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookDocumentReader documentReader;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        for (int x = 0; x < BOOKS; x++) {
+            var bookId = bookRepository.save(new Book()
+                    .setTitle("The Great Gatsby " + x)
+                    .setAuthor("F. Scott Fitzgerald")
+                    .setPublisher("Scribner")
+                    .setPublicationYear(1925)).getId();
+            jdbcTemplate.update("INSERT INTO book_items (book_id) SELECT ? FROM generate_series(1, ?)", bookId, COPIES);
+        }
+        var userId = jdbcTemplate.queryForObject("""
+                INSERT INTO users (username, name, surname, email, phone_number, address)
+                VALUES ('Alelxo', 'Alex', 'Bur', 'efaf@gmail.com', '380679920267', 'assfasfd')
+                RETURNING id
+                """, UUID.class);
+        jdbcTemplate.update("""
+                UPDATE book_items
+                SET user_id = ?, status = 'IN_PROGRESS', borrowed_at = CURRENT_TIMESTAMP
+                WHERE id IN (SELECT id FROM book_items ORDER BY id LIMIT ?)
+                """, userId, BOOKS * COPIES / 2);
+        jdbcTemplate.update("INSERT INTO genres (name) VALUES ('Classic')");
+        jdbcTemplate.update("INSERT INTO book_genres (book_id, genre_id) SELECT b.id, g.id FROM books b, genres g");
+    }
+
+    @AfterEach
+    void cleanAfter() {
+        bookService.removeAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void jsonReadModelMatchesEntityMapping() {
+        var entityPage = bookService.getByIds(bookRepository.findPageOfIds(PAGE).getContent());
+        var jsonPage = documentReader.findByIds(bookRepository.findPageOfIds(PAGE).getContent());
+
+        assertEquals(normalize(entityPage), normalize(jsonPage));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.read-model", matches = "true")
+    void compareReadModels() {
+        measure("entity", () -> bookService.getByIds(bookRepository.findPageOfIds(PAGE).getContent()));
+        measure("json", () -> documentReader.findByIds(bookRepository.findPageOfIds(PAGE).getContent()));
+        measure("entity", () -> bookService.getByIds(bookRepository.findPageOfIds(PAGE).getContent()));
+        measure("json", () -> documentReader.findByIds(bookRepository.findPageOfIds(PAGE).getContent()));
+    }
+
+    private void measure(final String readModel, final Supplier<List<BookResponse>> page) {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        var allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        var latencies = Benchmarks.measure(ITERATIONS, page::get);
+        var allocated = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        log.info("{}: {} books x {} copies, page of {}, {} iterations, p50 {} ms, p99 {} ms, {} KB allocated per page",
+                readModel, BOOKS, COPIES, PAGE.getPageSize(), ITERATIONS, String.format("%.2f", latencies.p50Ms()),
+                String.format("%.2f", latencies.p99Ms()), String.format("%.1f", allocated / 1024.0 / ITERATIONS));
+    }
+
+    private static List<BookResponse> normalize(final List<BookResponse> books) {
+        books.forEach(book -> book.setBookItems(book.getBookItems().stream()
+                .sorted(Comparator.comparing(BookItemDto::getBookItemId))
+                .toList()));
+        return books;
+    }
+}
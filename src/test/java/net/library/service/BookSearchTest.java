@@ -0,0 +1,116 @@
+package net.library.service;
+
+import net.library.model.request.CountMode;
+import net.library.model.request.SearchMode;
+import net.library.tools.Benchmarks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link BookSearch} is served by the GIN index. The benchmark is opt-in: -Dbenchmark.search=true,
+ * sizes are set with -Dbenchmark.books (1M by default) and -Dbenchmark.iterations.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class BookSearchTest {
+    private static final Logger log = LoggerFactory.getLogger(BookSearchTest.class);
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 1_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final PageRequest PAGE = PageRequest.of(0, 10);
+    private static final String WORDS = "{great,gatsby,night,tender,river,winter,garden,silent,empire,shadow,ocean,"
+            + "stone,golden,letters,journey,memory,kingdom,forest,storm,harbor}";
+
+    @Autowired
+    private BookSearch bookSearch;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanAfter() {
+        bookService.removeAll();
+    }
+
+    @Test
+    void searchUsesGinIndex() {
+        jdbcTemplate.update("""
+                INSERT INTO books (title, author, publisher, publication_year)
+                SELECT 'The Great Gatsby ' || g, 'F. Scott Fitzgerald', 'Scribner', 1925 FROM generate_series(1, 1000) g
+                """);
+        jdbcTemplate.execute("ANALYZE books");
+
+        // a table this small is cheaper to scan, the plan must show that the index can serve the query
+        var plan = jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (var statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                var lines = new ArrayList<String>();
+                try (var rs = statement.executeQuery("""
+                        EXPLAIN SELECT b.id FROM books b, websearch_to_tsquery('english', 'gatsby 42') query
+                        WHERE b.search_vector @@ query
+                        """)) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                statement.execute("RESET enable_seqscan");
+                return String.join("\n", lines);
+            }
+        });
+
+        assertTrue(plan.contains("idx_books_search_vector"), plan);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.search", matches = "true")
+    void searchOneMillionBooks() {
+        var start = System.nanoTime();
+        jdbcTemplate.update("""
+                WITH words AS (SELECT CAST(? AS text[]) AS w)
+                INSERT INTO books (title, author, description, publisher, edition, publication_year)
+                SELECT initcap(w[1 + g % 20] || ' ' || w[1 + g / 20 % 20] || ' ' || w[1 + g / 400 % 20]),
+                       'Author ' || g % 50000,
+                       'A story of ' || w[1 + g / 7 % 20] || ' and ' || w[1 + g / 11 % 20] || ', book ' || g,
+                       'Publisher ' || g % 1000,
+                       CAST(g AS text),
+                       1800 + g % 220
+                FROM generate_series(1, ?) g, words
+                """, WORDS, BOOKS);
+        jdbcTemplate.update("""
+                INSERT INTO book_items (book_id)
+                SELECT id FROM books TABLESAMPLE SYSTEM (10)
+                """);
+        jdbcTemplate.execute("ANALYZE");
+        log.info("search: {} books loaded in {} s", BOOKS, String.format("%.1f", (System.nanoTime() - start) / 1e9));
+
+        measure("words", () -> bookSearch.findIds("great gatsby", SearchMode.WORDS, null, null, PAGE, CountMode.NONE));
+        measure("words+count", () -> bookSearch.findIds("great gatsby", SearchMode.WORDS, null, null, PAGE, CountMode.EXACT));
+        measure("prefix", () -> bookSearch.findIds("great gat", SearchMode.PREFIX, null, null, PAGE, CountMode.NONE));
+        measure("phrase", () -> bookSearch.findIds("winter garden", SearchMode.PHRASE, null, null, PAGE, CountMode.NONE));
+        measure("words+available", () -> bookSearch.findIds("silent storm", SearchMode.WORDS, null, true, PAGE, CountMode.NONE));
+        measure("ilike baseline", () -> jdbcTemplate.queryForList("""
+                SELECT id FROM books
+                WHERE title ILIKE '%great%gatsby%' OR author ILIKE '%great%gatsby%' OR description ILIKE '%great%gatsby%'
+                ORDER BY id LIMIT 10
+                """));
+    }
+
+    private void measure(final String name, final Runnable search) {
+        var latencies = Benchmarks.measure(ITERATIONS, search);
+        log.info("search {}: {} books, page of {}, {} iterations, p50 {} ms, p99 {} ms", name, BOOKS, PAGE.getPageSize(),
+                ITERATIONS, String.format("%.2f", latencies.p50Ms()), String.format("%.2f", latencies.p99Ms()));
+    }
+}
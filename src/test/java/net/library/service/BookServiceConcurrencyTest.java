@@ -0,0 +1,248 @@
+package net.library.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.library.exception.NotFoundException;
+import net.library.model.entity.Book;
+import net.library.model.request.BookItemBatchEntry;
+import net.library.repository.BookRepository;
+import net.library.repository.UserRepository;
+import net.library.repository.enums.BookItemStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static net.library.tools.Tools.virtualThreadRunner;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress suite for the four borrow/return paths of {@link BookService}, run by virtual-thread clients against
+ * the Testcontainers Postgres. Sizes are set with -Dstress.clients and -Dstress.copies.
+ * Every path checks that no copy changes hands twice and that history rows match the transitions,
+ * and prints throughput and latency percentiles to compare the paths.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class BookServiceConcurrencyTest {
+    private static final Logger log = LoggerFactory.getLogger(BookServiceConcurrencyTest.class);
+    private static final int CLIENTS = Integer.getInteger("stress.clients", 200);
+    private static final int COPIES = Integer.getInteger("stress.copies", 50);
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private BookAvailabilityIndex availabilityIndex;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UUID bookId;
+    private List<UUID> bookItemIds;
+    private List<UUID> userIds;
+
+    @BeforeEach
+    void setUp() {
+        bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+
+        bookItemIds = jdbcTemplate.queryForList(
+                "INSERT INTO book_items (book_id) SELECT ? FROM generate_series(1, ?) RETURNING id", UUID.class, bookId, COPIES);
+        userIds = jdbcTemplate.queryForList("""
+                INSERT INTO users (username, name, surname, email)
+                SELECT 'stress' || g, 'Alex', 'Bur', 'stress@gmail.com' FROM generate_series(1, ?) g
+                RETURNING id
+                """, UUID.class, CLIENTS);
+    }
+
+    @AfterEach
+    void cleanAfter() {
+        bookService.removeAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void borrowActionBookItemByIdNoDoubleBorrow() {
+        var outcomes = run("borrowActionBookItemById", client -> bookService.borrowActionBookItemById(
+                randomCopy(), userIds.get(client), BookItemStatus.IN_PROGRESS));
+
+        var borrowed = countByStatus(BookItemStatus.IN_PROGRESS);
+        assertEquals(0, outcomes.failed());
+        assertEquals(borrowed, outcomes.succeeded());
+        assertEquals(CLIENTS, outcomes.succeeded() + outcomes.refused());
+        assertEquals(borrowed, countHistory("BORROWED"));
+        assertEquals(borrowed, countDistinctBorrowers());
+    }
+
+    @Test
+    void borrowActionForAnyBookItemAllocatesEveryCopyOnce() {
+        var outcomes = run("borrowActionForAnyBookItem", client -> bookService.borrowActionForAnyBookItem(
+                bookId, userIds.get(client)));
+
+        assertEquals(0, outcomes.failed());
+        assertEquals(Math.min(CLIENTS, COPIES), outcomes.succeeded());
+        assertEquals(outcomes.succeeded(), countByStatus(BookItemStatus.IN_PROGRESS));
+        assertEquals(outcomes.succeeded(), countHistory("BORROWED"));
+        assertEquals(outcomes.succeeded(), countDistinctBorrowers());
+    }
+
+    @Test
+    void returnActionForBookItemReturnsEveryCopyOnce() {
+        var borrowers = borrowAllCopies();
+
+        var outcomes = run("returnActionForBookItem", client -> bookService.returnActionForBookItem(
+                bookItemIds.get(client % COPIES), borrowers.get(client % COPIES)));
+
+        assertEquals(0, outcomes.failed());
+        assertEquals(Math.min(CLIENTS, COPIES), outcomes.succeeded());
+        assertEquals(outcomes.succeeded(), countByStatus(BookItemStatus.AVAILABLE));
+        assertEquals(outcomes.succeeded(), countHistory("RETURNED"));
+    }
+
+    @Test
+    void returnActionForBookItemHibernateImplReturnsEveryCopyOnce() {
+        var borrowers = borrowAllCopies();
+
+        var outcomes = run("returnActionForBookItemHibernateImpl", client -> bookService.returnActionForBookItemHibernateImpl(
+                bookItemIds.get(client % COPIES), borrowers.get(client % COPIES)));
+
+        assertEquals(0, outcomes.failed());
+        assertEquals(Math.min(CLIENTS, COPIES), outcomes.succeeded());
+        assertEquals(outcomes.succeeded(), countByStatus(BookItemStatus.AVAILABLE));
+        assertEquals(outcomes.succeeded(), countHistory("RETURNED"));
+    }
+
+    @Test
+    void copiesLockedByAnotherBorrowerDoNotExhaustTheBook() throws SQLException {
+        try (var connection = dataSource.getConnection()) {
+            // another borrower holds every copy in an open transaction
+            connection.setAutoCommit(false);
+            try (var statement = connection.prepareStatement("SELECT id FROM book_items WHERE book_id = ? FOR UPDATE")) {
+                statement.setObject(1, bookId);
+                statement.executeQuery().close();
+            }
+
+            assertThrows(NotFoundException.class, () -> bookService.borrowActionForAnyBookItem(bookId, userIds.getFirst()));
+            assertFalse(availabilityIndex.isExhausted(bookId));
+
+            connection.rollback();
+        }
+
+        assertNotNull(bookService.borrowActionForAnyBookItem(bookId, userIds.getFirst()).getBookItemId());
+    }
+
+    private Outcomes run(final String path, final Consumer<Integer> client) {
+        var timer = Timer.builder("stress." + path)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+
+        List<Callable<Outcome>> tasks = new ArrayList<>();
+        for (int x = 0; x < CLIENTS; x++) {
+            var clientId = x;
+            tasks.add(() -> {
+                var start = System.nanoTime();
+                try {
+                    client.accept(clientId);
+                    return Outcome.SUCCEEDED;
+                } catch (NotFoundException | ObjectOptimisticLockingFailureException e) {
+                    return Outcome.REFUSED;
+                } catch (RuntimeException e) {
+                    log.error("{}: client {} failed", path, clientId, e);
+                    return Outcome.FAILED;
+                } finally {
+                    timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        }
+
+        var start = System.nanoTime();
+        var results = virtualThreadRunner(tasks);
+        var elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        var snapshot = timer.takeSnapshot();
+        var percentiles = new StringBuilder();
+        for (var value : snapshot.percentileValues()) {
+            percentiles.append(String.format(" p%.0f %.2f ms", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        log.info("{}: {} clients, {} copies in {} ms, throughput {} ops/s, max {} ms,{}", path, CLIENTS, COPIES,
+                String.format("%.1f", elapsedMs), String.format("%.1f", CLIENTS / (elapsedMs / 1000)),
+                String.format("%.2f", snapshot.max(TimeUnit.MILLISECONDS)), percentiles);
+
+        return new Outcomes(
+                results.stream().filter(Outcome.SUCCEEDED::equals).count(),
+                results.stream().filter(Outcome.REFUSED::equals).count(),
+                results.stream().filter(Outcome.FAILED::equals).count());
+    }
+
+    /**
+     * Borrows copy i by user i, returns the borrowers in the order of copies.
+     */
+    private List<UUID> borrowAllCopies() {
+        var borrowers = IntStream.range(0, COPIES)
+                .mapToObj(i -> userIds.get(i % CLIENTS))
+                .toList();
+        var entries = IntStream.range(0, COPIES)
+                .mapToObj(i -> new BookItemBatchEntry(bookItemIds.get(i), borrowers.get(i)))
+                .toList();
+        bookService.borrowBookItems(entries);
+        return borrowers;
+    }
+
+    private UUID randomCopy() {
+        return bookItemIds.get(ThreadLocalRandom.current().nextInt(COPIES));
+    }
+
+    private long countByStatus(final BookItemStatus status) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_items WHERE book_id = ? AND status = CAST(? AS book_item_status_types)",
+                Long.class, bookId, status.name());
+    }
+
+    private long countHistory(final String action) {
+        return jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM book_item_history h
+                JOIN book_items bi ON bi.id = h.item_id
+                WHERE bi.book_id = ? AND h.action_type = CAST(? AS book_action_types)
+                """, Long.class, bookId, action);
+    }
+
+    private long countDistinctBorrowers() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT user_id) FROM book_items WHERE book_id = ? AND status = 'IN_PROGRESS'",
+                Long.class, bookId);
+    }
+
+    private enum Outcome {
+        SUCCEEDED,
+        REFUSED,
+        FAILED
+    }
+
+    private record Outcomes(long succeeded, long refused, long failed) {
+    }
+}
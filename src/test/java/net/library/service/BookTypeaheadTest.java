@@ -0,0 +1,119 @@
+package net.library.service;
+
+import net.library.model.dto.BookSuggestionDto;
+import net.library.tools.Benchmarks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares {@link BookTypeahead} with a brute-force scan of 'BOOKS'. The benchmark is opt-in:
+ * -Dbenchmark.typeahead=true, sizes are set with -Dbenchmark.books (1M by default) and -Dbenchmark.iterations.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class BookTypeaheadTest {
+    private static final Logger log = LoggerFactory.getLogger(BookTypeaheadTest.class);
+    private static final int BOOKS = Integer.getInteger("benchmark.books", 1_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 10_000);
+    private static final String WORDS = "{great,gatsby,night,tender,river,winter,garden,silent,empire,shadow,ocean,"
+            + "stone,golden,letters,journey,memory,kingdom,forest,storm,harbor}";
+    private static final List<String> QUERIES = List.of("g", "gr", "great", "great gat", "win gar", "silent st", "author 12",
+            "s", "stone sto", "harbor empire kingdom");
+
+    @Autowired
+    private BookTypeahead typeahead;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanAfter() {
+        bookService.removeAll();
+    }
+
+    @Test
+    void rebuiltIndexMatchesBruteForce() {
+        insertBooks(5_000);
+        typeahead.rebuild();
+        var books = new ArrayList<>(jdbcTemplate.query("SELECT id, title, author FROM books",
+                (rs, rowNum) -> new BookSuggestionDto(rs.getObject("id", UUID.class), rs.getString("title"), rs.getString("author"))));
+
+        var removed = books.removeFirst();
+        typeahead.remove(removed.getBookId());
+        var added = new BookSuggestionDto(UUID.randomUUID(), "Great", "Someone");
+        typeahead.add(added.getBookId(), added.getTitle(), added.getAuthor());
+        books.add(added);
+
+        for (var query : QUERIES) {
+            var expected = books.stream()
+                    .filter(book -> matches(book, query))
+                    .sorted(Comparator.comparingInt((BookSuggestionDto book) -> book.getTitle().length())
+                            .thenComparing(BookSuggestionDto::getTitle, String.CASE_INSENSITIVE_ORDER)
+                            .thenComparing(BookSuggestionDto::getBookId))
+                    .limit(10)
+                    .toList();
+
+            assertEquals(expected, typeahead.suggest(query, 10), query);
+        }
+        assertEquals(added, typeahead.suggest("great", 1).getFirst());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.typeahead", matches = "true")
+    void suggestFromOneMillionBooks() {
+        insertBooks(BOOKS);
+        var runtime = Runtime.getRuntime();
+        System.gc();
+        var usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        var start = System.nanoTime();
+        typeahead.rebuild();
+        var buildMs = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        log.info("typeahead: {} books indexed in {} ms, ~{} MB retained", BOOKS, buildMs,
+                String.format("%.1f", (runtime.totalMemory() - runtime.freeMemory() - usedBefore) / 1024.0 / 1024.0));
+
+        for (var query : QUERIES) {
+            var latencies = Benchmarks.measure(ITERATIONS, () -> typeahead.suggest(query, 10));
+            log.info("typeahead '{}': {} iterations, p50 {} ms, p99 {} ms", query, ITERATIONS,
+                    String.format("%.3f", latencies.p50Ms()), String.format("%.3f", latencies.p99Ms()));
+        }
+    }
+
+    private void insertBooks(final int count) {
+        jdbcTemplate.update("""
+                WITH words AS (SELECT CAST(? AS text[]) AS w)
+                INSERT INTO books (title, author, publisher, edition)
+                SELECT initcap(w[1 + g % 20] || ' ' || w[1 + g / 20 % 20] || ' ' || w[1 + g / 400 % 20]),
+                       'Author ' || g % 50000,
+                       'Publisher',
+                       CAST(g AS text)
+                FROM generate_series(1, ?) g, words
+                """, WORDS, count);
+    }
+
+    /**
+     * Every word of the query starts a word of the title or the author.
+     */
+    private static boolean matches(final BookSuggestionDto book, final String query) {
+        var words = (book.getTitle() + " " + book.getAuthor()).toLowerCase(Locale.ROOT).split("[^a-z0-9]+");
+        return Arrays.stream(query.split(" "))
+                .allMatch(prefix -> Arrays.stream(words).anyMatch(word -> word.startsWith(prefix)));
+    }
+}
@@ -0,0 +1,111 @@
+package net.library.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.library.exception.NotFoundException;
+import net.library.model.entity.Book;
+import net.library.repository.BookRepository;
+import net.library.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import static net.library.tools.Tools.virtualThreadRunner;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Borrowing of any copy with {@link BorrowGroupCommitter} enabled: concurrent requests share allocation
+ * transactions, yet every copy is handed out once, every request gets its own copy and a request failing
+ * the shared transaction fails alone. The window is widened so the requests are batched together.
+ */
+@ActiveProfiles("test")
+@SpringBootTest(properties = {"library.borrow.group-commit.enabled=true", "library.borrow.group-commit.window=50ms"})
+class BorrowGroupCommitterTest {
+    private static final int CLIENTS = 40;
+    private static final int COPIES = 20;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UUID bookId;
+    private List<UUID> userIds;
+
+    @BeforeEach
+    void setUp() {
+        bookId = bookRepository.save(new Book()
+                .setTitle("The Great Gatsby")
+                .setAuthor("F. Scott Fitzgerald")
+                .setPublisher("Scribner")
+                .setPublicationYear(1925)).getId();
+
+        jdbcTemplate.update("INSERT INTO book_items (book_id) SELECT ? FROM generate_series(1, ?)", bookId, COPIES);
+        userIds = jdbcTemplate.queryForList("""
+                INSERT INTO users (username, name, surname, email)
+                SELECT 'group' || g, 'Alex', 'Bur', 'group@gmail.com' FROM generate_series(1, ?) g
+                RETURNING id
+                """, UUID.class, CLIENTS);
+    }
+
+    @AfterEach
+    void cleanAfter() {
+        bookService.removeAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void batchedBorrowsAllocateEveryCopyOnceToItsOwnRequest() {
+        var unknownUserId = UUID.randomUUID();
+        var requesters = new ArrayList<>(userIds);
+        requesters.set(CLIENTS / 2, unknownUserId);
+
+        List<Callable<Borrow>> tasks = new ArrayList<>();
+        for (var userId : requesters) {
+            tasks.add(() -> {
+                try {
+                    return new Borrow(userId, bookService.borrowActionForAnyBookItem(bookId, userId).getBookItemId(), null);
+                } catch (RuntimeException e) {
+                    return new Borrow(userId, null, e);
+                }
+            });
+        }
+        var borrows = virtualThreadRunner(tasks);
+
+        var failed = borrows.stream().filter(borrow -> borrow.error() != null && !(borrow.error() instanceof NotFoundException)).toList();
+        assertEquals(1, failed.size(), failed.toString());
+        assertEquals(unknownUserId, failed.getFirst().userId());
+
+        var succeeded = borrows.stream().filter(borrow -> borrow.bookItemId() != null).toList();
+        var refused = borrows.stream().filter(borrow -> borrow.error() instanceof NotFoundException).count();
+        assertEquals(COPIES, succeeded.size());
+        assertEquals(CLIENTS - 1 - COPIES, refused);
+
+        var borrowers = new HashMap<UUID, UUID>();
+        jdbcTemplate.query("SELECT id, user_id FROM book_items WHERE book_id = ? AND status = 'IN_PROGRESS'", rs -> {
+            borrowers.put(rs.getObject("id", UUID.class), rs.getObject("user_id", UUID.class));
+        }, bookId);
+        assertEquals(COPIES, borrowers.size());
+        succeeded.forEach(borrow -> assertEquals(borrow.userId(), borrowers.get(borrow.bookItemId()), borrow.toString()));
+
+        assertTrue(meterRegistry.get("library.borrow.group_commit.batch.size").summary().max() > 1);
+    }
+
+    private record Borrow(UUID userId, UUID bookItemId, RuntimeException error) {
+    }
+}
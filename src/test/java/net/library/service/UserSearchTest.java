@@ -0,0 +1,111 @@
+package net.library.service;
+
+import net.library.model.request.CountMode;
+import net.library.model.request.UserSearchMode;
+import net.library.repository.UserRepository;
+import net.library.tools.Benchmarks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that {@link UserSearch} and the username filter of {@link UserService} are served by the trigram index.
+ * The benchmark is opt-in: -Dbenchmark.user-search=true, sizes are set with -Dbenchmark.users (1M by default)
+ * and -Dbenchmark.iterations.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+class UserSearchTest {
+    private static final Logger log = LoggerFactory.getLogger(UserSearchTest.class);
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final PageRequest PAGE = PageRequest.of(0, 10);
+
+    @Autowired
+    private UserSearch userSearch;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanAfter() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void searchUsesTrigramIndex() {
+        insertUsers(1000);
+
+        for (var condition : new String[]{
+                "u.username ILIKE '%ser12%' OR u.name ILIKE '%ser12%' OR u.surname ILIKE '%ser12%' OR u.email ILIKE '%ser12%'",
+                "u.username % 'user123' OR u.name % 'user123' OR u.surname % 'user123' OR u.email % 'user123'",
+                "u.username LIKE '%ser12%'"}) {
+            var plan = explain("SELECT u.id FROM users u WHERE " + condition);
+            assertTrue(plan.contains("idx_users_trgm"), plan);
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.user-search", matches = "true")
+    void searchOneMillionUsers() {
+        var start = System.nanoTime();
+        insertUsers(USERS);
+        jdbcTemplate.execute("ANALYZE users");
+        log.info("user search: {} users loaded in {} s", USERS, String.format("%.1f", (System.nanoTime() - start) / 1e9));
+
+        measure("substring", () -> userSearch.findIds("er4242", UserSearchMode.SUBSTRING, PAGE, CountMode.NONE));
+        measure("substring+count", () -> userSearch.findIds("er4242", UserSearchMode.SUBSTRING, PAGE, CountMode.EXACT));
+        measure("prefix", () -> userSearch.findIds("user4242", UserSearchMode.PREFIX, PAGE, CountMode.NONE));
+        measure("fuzzy", () -> userSearch.findIds("usr424242", UserSearchMode.FUZZY, PAGE, CountMode.NONE));
+        measure("username filter", () -> userService.getAllByFilter(null, null, "er4242", null, null, null, PAGE, CountMode.NONE));
+    }
+
+    private void insertUsers(final int count) {
+        jdbcTemplate.update("""
+                INSERT INTO users (username, name, surname, email)
+                SELECT 'user' || g, 'Name' || g % 5000, 'Surname' || g % 20000, 'user' || g || '@example.com'
+                FROM generate_series(1, ?) g
+                """, count);
+    }
+
+    /**
+     * Plan of the query with sequential scans disabled: tables of the test are small enough to be scanned,
+     * the plan shows whether the index can serve the query at all.
+     */
+    private String explain(final String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (var statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                var lines = new ArrayList<String>();
+                try (var rs = statement.executeQuery("EXPLAIN " + sql)) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                statement.execute("RESET enable_seqscan");
+                return String.join("\n", lines);
+            }
+        });
+    }
+
+    private void measure(final String name, final Runnable search) {
+        var latencies = Benchmarks.measure(ITERATIONS, search);
+        log.info("user search {}: {} users, page of {}, {} iterations, p50 {} ms, p99 {} ms", name, USERS, PAGE.getPageSize(),
+                ITERATIONS, String.format("%.2f", latencies.p50Ms()), String.format("%.2f", latencies.p99Ms()));
+    }
+}
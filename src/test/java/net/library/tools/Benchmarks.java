@@ -0,0 +1,27 @@
+package net.library.tools;
+
+import java.util.Arrays;
+
+/**
+ * Latency measurement shared by the opt-in benchmarks.
+ */
+public class Benchmarks {
+
+    /**
+     * Runs the action the given number of times, one after another, and returns the percentiles of its latency.
+     */
+    public static Latencies measure(final int iterations, final Runnable action) {
+        var latencies = new long[iterations];
+        for (int x = 0; x < iterations; x++) {
+            var start = System.nanoTime();
+            action.run();
+            latencies[x] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(latencies);
+        return new Latencies(latencies[iterations / 2] / 1_000_000.0, latencies[iterations * 99 / 100] / 1_000_000.0);
+    }
+
+    public record Latencies(double p50Ms, double p99Ms) {
+    }
+}
@@ -0,0 +1,128 @@
+package net.library.tools;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps the {@link DataSource} of the context to record the SELECT statements generated by Hibernate and Spring Data
+ * together with their parameters, so they can be explained with the very same values the application bound.
+ * Register it as a static bean of a test configuration.
+ */
+public class QueryPlanRecorder implements BeanPostProcessor {
+    // Hibernate prefixes statements with a comment when 'use_sql_comments' is on
+    private static final Pattern SELECT = Pattern.compile("^\\s*(/\\*.*?\\*/\\s*)?select\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final List<RecordedQuery> queries = new CopyOnWriteArrayList<>();
+    private volatile boolean recording;
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource, this::wrapConnection) : bean;
+    }
+
+    /**
+     * SELECT statements executed by the action.
+     */
+    public List<RecordedQuery> record(final Runnable action) {
+        queries.clear();
+        recording = true;
+        try {
+            action.run();
+        } finally {
+            recording = false;
+        }
+        return List.copyOf(queries);
+    }
+
+    /**
+     * EXPLAIN of the query with its recorded parameters.
+     */
+    public String explain(final JdbcTemplate jdbcTemplate, final RecordedQuery query) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (var statement = connection.prepareStatement("EXPLAIN " + query.sql())) {
+                for (var parameter : query.parameters()) {
+                    parameter.method().invoke(statement, parameter.args());
+                }
+                var lines = new ArrayList<String>();
+                try (var rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                return String.join("\n", lines);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Parameters of " + query.sql() + " cannot be bound", e);
+            }
+        });
+    }
+
+    private Object wrapConnection(final Object target, final Method method, final Object[] args) throws Throwable {
+        var result = invoke(target, method, args);
+        return result instanceof Connection connection
+                ? proxy(Connection.class, connection, this::wrapStatement)
+                : result;
+    }
+
+    private Object wrapStatement(final Object target, final Method method, final Object[] args) throws Throwable {
+        var result = invoke(target, method, args);
+        if (method.getName().equals("prepareStatement") && result instanceof PreparedStatement statement) {
+            var sql = (String) args[0];
+            var parameters = new ArrayList<Parameter>();
+            return proxy(PreparedStatement.class, statement, (statementTarget, statementMethod, statementArgs) -> {
+                var name = statementMethod.getName();
+                if (name.startsWith("set") && statementArgs != null && statementArgs.length >= 2
+                        && statementArgs[0] instanceof Integer) {
+                    parameters.add(new Parameter(statementMethod, statementArgs.clone()));
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                } else if (name.startsWith("execute") && recording && SELECT.matcher(sql).matches()) {
+                    queries.add(new RecordedQuery(sql, List.copyOf(parameters)));
+                }
+                return invoke(statementTarget, statementMethod, statementArgs);
+            });
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> type, final T target, final Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> handler.handle(target, method, args);
+        return (T) Proxy.newProxyInstance(QueryPlanRecorder.class.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Object target, Method method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * A setter called on the statement, e.g. setObject(1, "BANNED", Types.OTHER).
+     */
+    public record Parameter(Method method, Object[] args) {
+    }
+
+    public record RecordedQuery(String sql, List<Parameter> parameters) {
+    }
+}
@@ -77,5 +77,18 @@ public class Tools {
         }
     }
 
-
-}
\ No newline at end of file
+    public static <T> List<T> virtualThreadRunner(List<Callable<T>> tasks) {
+        try (var executor = newVirtualThreadPerTaskExecutor()) {
+            List<T> results = new ArrayList<>();
+            for (var future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -121,15 +121,16 @@ ON CONSTRAINT FK_GENRES_GENRE_ID ON BOOK_GENRES IS 'CREATE THE FOREIGN KEY TO TH
 
 CREATE TABLE BOOK_ITEM_HISTORY
 (
-    ID          UUID              DEFAULT UUID_GENERATE_V4() PRIMARY KEY,
-    ITEM_ID     UUID                                NOT NULL,
+    ID          UUID              DEFAULT UUID_GENERATE_V4()        NOT NULL,
+    ITEM_ID     UUID                                                NOT NULL,
     USER_ID     UUID,
-    ACTION_AT   TIMESTAMP         DEFAULT CURRENT_TIMESTAMP,
-    ACTION_TYPE BOOK_ACTION_TYPES DEFAULT ('ADDED') NOT NULL,
+    ACTION_AT   TIMESTAMP         DEFAULT CURRENT_TIMESTAMP         NOT NULL,
+    ACTION_TYPE BOOK_ACTION_TYPES DEFAULT ('ADDED')                 NOT NULL,
 
+    CONSTRAINT PK_BOOK_ITEM_HISTORY PRIMARY KEY (ID, ACTION_AT),
     CONSTRAINT FK_BOOK_ITEM_HISTORY_USER FOREIGN KEY (USER_ID) REFERENCES USERS (ID) ON DELETE NO ACTION,
     CONSTRAINT FK_BOOK_ITEM_HISTORY_BOOK FOREIGN KEY (ITEM_ID) REFERENCES BOOK_ITEMS (ID) ON DELETE NO ACTION
-);
+) PARTITION BY RANGE (ACTION_AT);
 COMMENT
 ON COLUMN USERS.ROLE_TYPE IS 'USER ROLE IN THE SYSTEM';
 COMMENT
@@ -140,6 +141,20 @@ COMMENT
 ON CONSTRAINT FK_BOOK_ITEM_HISTORY_USER ON BOOK_ITEM_HISTORY IS 'CREATE THE FOREIGN KEY TO THE USERS TABLE';
 COMMENT
 ON CONSTRAINT FK_BOOK_ITEM_HISTORY_BOOK ON BOOK_ITEM_HISTORY IS 'CREATE THE FOREIGN KEY TO THE BOOKS TABLE';
+COMMENT
+ON CONSTRAINT PK_BOOK_ITEM_HISTORY ON BOOK_ITEM_HISTORY IS 'PRIMARY KEY INCLUDES ACTION_AT AS IT IS THE PARTITION KEY';
+
+CREATE TABLE BOOK_ITEM_HISTORY_DEFAULT PARTITION OF BOOK_ITEM_HISTORY DEFAULT;
+COMMENT
+ON TABLE BOOK_ITEM_HISTORY_DEFAULT IS 'STORES BOOK_ITEM_HISTORY ROWS OUTSIDE OF THE MONTHLY PARTITIONS, WHICH ARE CREATED BY THE APPLICATION';
+
+CREATE INDEX IDX_BOOK_ITEM_HISTORY_ACTION_AT ON BOOK_ITEM_HISTORY (ACTION_AT);
+COMMENT
+ON INDEX IDX_BOOK_ITEM_HISTORY_ACTION_AT IS 'INDEX FOR TIME RANGE QUERIES WITHIN A PARTITION';
+
+CREATE INDEX IDX_BOOK_ITEM_HISTORY_ITEM_ID ON BOOK_ITEM_HISTORY (ITEM_ID, ACTION_AT);
+COMMENT
+ON INDEX IDX_BOOK_ITEM_HISTORY_ITEM_ID IS 'INDEX FOR THE HISTORY OF A BOOK ITEM';
 
 CREATE
 OR REPLACE FUNCTION log_to_book_item_history()
@@ -182,8 +197,127 @@ CREATE TRIGGER BOOK_ITEM_HISTORY_TRIGGER_UPDATE
     AFTER UPDATE
     ON BOOK_ITEMS
     FOR EACH ROW
-    WHEN (OLD.BORROWED_AT IS DISTINCT FROM NEW.BORROWED_AT
+    WHEN ((OLD.BORROWED_AT IS DISTINCT FROM NEW.BORROWED_AT
       OR OLD.RETURNED_AT IS DISTINCT FROM NEW.RETURNED_AT)
+      AND CURRENT_SETTING('library.history_mode', TRUE) IS DISTINCT FROM 'application')
 EXECUTE FUNCTION log_to_book_item_history();
+COMMENT
+ON TRIGGER BOOK_ITEM_HISTORY_TRIGGER_UPDATE ON BOOK_ITEMS IS 'SKIPPED BY SESSIONS WITH LIBRARY.HISTORY_MODE = APPLICATION, THEIR BORROW AND RETURN ROWS ARE WRITTEN BY THE APPLICATION';
+
+ALTER TABLE book_items ADD COLUMN version BIGINT DEFAULT 0;
+
+CREATE TYPE HOLD_STATUS_TYPES AS ENUM ('WAITING', 'FULFILLED', 'CANCELLED');
+COMMENT
+ON TYPE HOLD_STATUS_TYPES IS 'CREATE ENUM TO SET THE COLUMN OF STATUS IN BOOK_HOLDS TABLE';
+
+CREATE TABLE BOOK_HOLDS
+(
+    ID           UUID              DEFAULT UUID_GENERATE_V4() PRIMARY KEY,
+    BOOK_ID      UUID                                         NOT NULL,
+    USER_ID      UUID                                         NOT NULL,
+    BOOK_ITEM_ID UUID,
+    STATUS       HOLD_STATUS_TYPES DEFAULT 'WAITING'          NOT NULL,
+    PRIORITY     INTEGER           DEFAULT 0                  NOT NULL,
+    CREATED_AT   TIMESTAMP         DEFAULT CURRENT_TIMESTAMP  NOT NULL,
+    FULFILLED_AT TIMESTAMP,
+
+    CONSTRAINT FK_BOOK_HOLDS_BOOK FOREIGN KEY (BOOK_ID) REFERENCES BOOKS (ID) ON DELETE CASCADE,
+    CONSTRAINT FK_BOOK_HOLDS_USER FOREIGN KEY (USER_ID) REFERENCES USERS (ID) ON DELETE CASCADE,
+    CONSTRAINT FK_BOOK_HOLDS_BOOK_ITEM FOREIGN KEY (BOOK_ITEM_ID) REFERENCES BOOK_ITEMS (ID) ON DELETE SET NULL
+);
+COMMENT
+ON TABLE BOOK_HOLDS IS 'CREATE THE BOOK_HOLDS TABLE TO STORE THE WAITLIST OF USERS FOR BOOKS WITHOUT AVAILABLE COPIES';
+COMMENT
+ON COLUMN BOOK_HOLDS.BOOK_ITEM_ID IS 'COPY HANDED TO THE USER WHEN THE HOLD IS FULFILLED';
+COMMENT
+ON COLUMN BOOK_HOLDS.PRIORITY IS 'HOLDS WITH HIGHER PRIORITY ARE SERVED FIRST, EQUAL PRIORITIES IN ORDER OF CREATION';
+COMMENT
+ON CONSTRAINT FK_BOOK_HOLDS_BOOK ON BOOK_HOLDS IS 'CREATE THE FOREIGN KEY TO THE BOOKS TABLE';
+COMMENT
+ON CONSTRAINT FK_BOOK_HOLDS_USER ON BOOK_HOLDS IS 'CREATE THE FOREIGN KEY TO THE USERS TABLE';
+COMMENT
+ON CONSTRAINT FK_BOOK_HOLDS_BOOK_ITEM ON BOOK_HOLDS IS 'CREATE THE FOREIGN KEY TO THE BOOK_ITEMS TABLE';
 
-ALTER TABLE book_items ADD COLUMN version BIGINT DEFAULT 0;
\ No newline at end of file
+CREATE INDEX IDX_BOOK_HOLDS_QUEUE ON BOOK_HOLDS (BOOK_ID, PRIORITY DESC, CREATED_AT) WHERE STATUS = 'WAITING';
+COMMENT
+ON INDEX IDX_BOOK_HOLDS_QUEUE IS 'CREATE THE PARTIAL INDEX TO FIND THE HEAD OF THE WAITLIST OF A BOOK';
+
+CREATE UNIQUE INDEX UQ_BOOK_HOLDS_WAITING ON BOOK_HOLDS (BOOK_ID, USER_ID) WHERE STATUS = 'WAITING';
+COMMENT
+ON INDEX UQ_BOOK_HOLDS_WAITING IS 'A USER WAITS FOR A BOOK AT MOST ONCE';
+
+CREATE TABLE IDEMPOTENCY_KEYS
+(
+    IDEMPOTENCY_KEY VARCHAR(200)                        NOT NULL PRIMARY KEY,
+    FINGERPRINT     VARCHAR(1000)                       NOT NULL,
+    STATUS_CODE     INTEGER,
+    RESPONSE_BODY   TEXT,
+    CREATED_AT      TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    EXPIRES_AT      TIMESTAMP                           NOT NULL,
+    LEASE_UNTIL     TIMESTAMP
+);
+COMMENT
+ON TABLE IDEMPOTENCY_KEYS IS 'CREATE THE IDEMPOTENCY_KEYS TABLE TO STORE RESULTS OF REQUESTS SENT WITH AN IDEMPOTENCY-KEY HEADER';
+COMMENT
+ON COLUMN IDEMPOTENCY_KEYS.FINGERPRINT IS 'METHOD, PATH AND QUERY OF THE REQUEST THE KEY WAS FIRST USED WITH';
+COMMENT
+ON COLUMN IDEMPOTENCY_KEYS.STATUS_CODE IS 'NULL WHILE THE FIRST REQUEST WITH THE KEY IS IN PROGRESS';
+COMMENT
+ON COLUMN IDEMPOTENCY_KEYS.LEASE_UNTIL IS 'AN IN PROGRESS KEY MAY BE CLAIMED AGAIN AFTER THIS TIME, NULL ONCE THE RESPONSE IS STORED';
+
+CREATE INDEX IDX_IDEMPOTENCY_KEYS_EXPIRES_AT ON IDEMPOTENCY_KEYS (EXPIRES_AT);
+COMMENT
+ON INDEX IDX_IDEMPOTENCY_KEYS_EXPIRES_AT IS 'CREATE THE INDEX TO REMOVE EXPIRED KEYS';
+
+CREATE INDEX IDX_BOOKS_CREATED_AT_ID ON BOOKS (CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_BOOKS_CREATED_AT_ID IS 'CREATE THE INDEX FOR KEYSET (CURSOR) PAGINATION OF BOOKS';
+
+CREATE INDEX IDX_BOOK_ITEMS_CREATED_AT_ID ON BOOK_ITEMS (CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_BOOK_ITEMS_CREATED_AT_ID IS 'CREATE THE INDEX FOR KEYSET (CURSOR) PAGINATION OF BOOK ITEMS';
+
+CREATE INDEX IDX_USERS_CREATED_AT_ID ON USERS (CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_USERS_CREATED_AT_ID IS 'CREATE THE INDEX FOR KEYSET (CURSOR) PAGINATION OF USERS';
+
+ALTER TABLE BOOKS
+    ADD COLUMN SEARCH_VECTOR TSVECTOR GENERATED ALWAYS AS (
+        SETWEIGHT(TO_TSVECTOR('english', COALESCE(TITLE, '')), 'A') ||
+        SETWEIGHT(TO_TSVECTOR('english', COALESCE(AUTHOR, '')), 'B') ||
+        SETWEIGHT(TO_TSVECTOR('english', COALESCE(DESCRIPTION, '')), 'C')) STORED;
+COMMENT
+ON COLUMN BOOKS.SEARCH_VECTOR IS 'FULL-TEXT SEARCH DOCUMENT OF TITLE (WEIGHT A), AUTHOR (B) AND DESCRIPTION (C), KEPT UP TO DATE BY POSTGRES';
+
+CREATE INDEX IDX_BOOKS_SEARCH_VECTOR ON BOOKS USING GIN (SEARCH_VECTOR);
+COMMENT
+ON INDEX IDX_BOOKS_SEARCH_VECTOR IS 'CREATE THE INDEX FOR FULL-TEXT SEARCH OF BOOKS';
+
+CREATE
+EXTENSION IF NOT EXISTS PG_TRGM;
+COMMENT
+ON EXTENSION PG_TRGM IS 'CREATE TRIGRAM MATCHING FOR SUBSTRING AND FUZZY SEARCH';
+
+CREATE INDEX IDX_USERS_TRGM ON USERS USING GIN (USERNAME GIN_TRGM_OPS, NAME GIN_TRGM_OPS, SURNAME GIN_TRGM_OPS, EMAIL GIN_TRGM_OPS);
+COMMENT
+ON INDEX IDX_USERS_TRGM IS 'CREATE THE TRIGRAM INDEX FOR SUBSTRING, PREFIX AND FUZZY SEARCH OF USERS';
+
+CREATE INDEX IDX_BOOK_ITEMS_BOOK_ID_STATUS ON BOOK_ITEMS (BOOK_ID, STATUS, CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_BOOK_ITEMS_BOOK_ID_STATUS IS 'CREATE THE INDEX TO ALLOCATE AVAILABLE COPIES OF A BOOK AND TO FILTER ITS COPIES BY STATUS, SORTED BY CREATION';
+
+CREATE INDEX IDX_BOOK_ITEMS_STATUS_CREATED_AT_ID ON BOOK_ITEMS (STATUS, CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_BOOK_ITEMS_STATUS_CREATED_AT_ID IS 'CREATE THE INDEX TO FILTER BOOK ITEMS BY STATUS, SORTED BY CREATION';
+
+CREATE INDEX IDX_USERS_USER_STATE_CREATED_AT_ID ON USERS (USER_STATE, CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_USERS_USER_STATE_CREATED_AT_ID IS 'CREATE THE INDEX TO FILTER USERS BY USER_STATE, SORTED BY CREATION';
+
+CREATE INDEX IDX_USERS_MODERATION_STATE_CREATED_AT_ID ON USERS (MODERATION_STATE, CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_USERS_MODERATION_STATE_CREATED_AT_ID IS 'CREATE THE INDEX TO FILTER USERS BY MODERATION_STATE, SORTED BY CREATION';
+
+CREATE INDEX IDX_USERS_ROLE_TYPE_CREATED_AT_ID ON USERS (ROLE_TYPE, CREATED_AT, ID);
+COMMENT
+ON INDEX IDX_USERS_ROLE_TYPE_CREATED_AT_ID IS 'CREATE THE INDEX TO FILTER USERS BY ROLE_TYPE, SORTED BY CREATION';